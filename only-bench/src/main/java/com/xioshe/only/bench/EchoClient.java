@@ -0,0 +1,65 @@
+package com.xioshe.only.bench;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * 阻塞式的压测连接，发送固定大小的消息并读回同样长度的回复
+ *
+ * @author xioshe 2026-10-18
+ */
+class EchoClient implements AutoCloseable {
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] payload;
+    private final byte[] buffer;
+
+    EchoClient(int port, int payloadSize) throws IOException {
+        socket = new Socket("localhost", port);
+        socket.setTcpNoDelay(true);
+        in = socket.getInputStream();
+        out = socket.getOutputStream();
+        // 以换行结尾，按行回显的服务也能处理
+        payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'x');
+        payload[payloadSize - 1] = '\n';
+        buffer = new byte[payloadSize];
+    }
+
+    void send() throws IOException {
+        out.write(payload);
+    }
+
+    /**
+     * 读到一条完整的回复为止
+     *
+     * @return 回复的字节数
+     */
+    int receive() throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int n = in.read(buffer, read, buffer.length - read);
+            if (n < 0) {
+                throw new EOFException("Connection closed by server");
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    int roundTrip() throws IOException {
+        send();
+        return receive();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
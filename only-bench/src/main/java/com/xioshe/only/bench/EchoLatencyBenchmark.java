@@ -0,0 +1,47 @@
+package com.xioshe.only.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单连接往返延迟，所有服务都参与比较，输出分位值
+ * <br/>运行：{@code java -jar only-bench/target/benchmarks.jar EchoLatencyBenchmark}
+ *
+ * @author xioshe 2026-10-18
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EchoLatencyBenchmark {
+
+    @Param({"SERIAL", "PARALLEL", "REACTOR", "MULTI_THREAD_REACTOR", "NETTY"})
+    EchoServers server;
+
+    @Param({"64", "1024", "16384"})
+    int payloadSize;
+
+    EchoServers.Running running;
+    EchoClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        running = server.start();
+        client = new EchoClient(running.port(), payloadSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        running.close();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        return client.roundTrip();
+    }
+}
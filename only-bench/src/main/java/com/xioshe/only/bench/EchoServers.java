@@ -0,0 +1,80 @@
+package com.xioshe.only.bench;
+
+import com.xioshe.netty.EchoServer;
+import com.xioshe.only.java.base.net.socket.AbstractSocketServer;
+import com.xioshe.only.java.base.net.socket.ParallelTcpEchoServer;
+import com.xioshe.only.java.base.net.socket.SerialTcpEchoServer;
+import com.xioshe.only.java.base.nio.reactor.MultiThreadReactor;
+import com.xioshe.only.java.base.nio.reactor.Reactor;
+
+/**
+ * 压测用到的 Echo 服务，都在进程内启动并监听随机端口
+ *
+ * @author xioshe 2026-10-18
+ */
+public enum EchoServers {
+
+    SERIAL {
+        @Override
+        Running start() throws Exception {
+            return startSocketServer(new SerialTcpEchoServer());
+        }
+    },
+    PARALLEL {
+        @Override
+        Running start() throws Exception {
+            return startSocketServer(new ParallelTcpEchoServer());
+        }
+    },
+    REACTOR {
+        @Override
+        Running start() throws Exception {
+            var reactor = new Reactor(0);
+            int port = reactor.start();
+            return new Running(port, reactor::close);
+        }
+    },
+    MULTI_THREAD_REACTOR {
+        @Override
+        Running start() throws Exception {
+            var reactor = new MultiThreadReactor(0);
+            int port = reactor.start();
+            return new Running(port, reactor::close);
+        }
+    },
+    NETTY {
+        @Override
+        Running start() throws Exception {
+            var server = new EchoServer(0, true);
+            int port = server.bind();
+            return new Running(port, server::stop);
+        }
+    };
+
+    /**
+     * 启动服务，返回后即可连接
+     */
+    abstract Running start() throws Exception;
+
+    private static Running startSocketServer(AbstractSocketServer server) throws Exception {
+        // 二进制模式：没有欢迎语，也不打印每条消息
+        server.setBinary(true);
+        int port = server.start(0);
+        return new Running(port, server::stop);
+    }
+
+    /**
+     * 运行中的服务
+     */
+    record Running(int port, Stopper stopper) implements AutoCloseable {
+        @Override
+        public void close() throws Exception {
+            stopper.stop();
+        }
+    }
+
+    @FunctionalInterface
+    interface Stopper {
+        void stop() throws Exception;
+    }
+}
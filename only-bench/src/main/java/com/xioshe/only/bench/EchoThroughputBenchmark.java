@@ -0,0 +1,73 @@
+package com.xioshe.only.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多连接吞吐量，每次调用向所有连接各发一条消息，再依次读回
+ * <br/>SERIAL 一次只服务一个连接，不参与比较。
+ * 结果中的 messages 是每秒完成的往返消息数
+ *
+ * @author xioshe 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EchoThroughputBenchmark {
+
+    @Param({"PARALLEL", "REACTOR", "MULTI_THREAD_REACTOR", "NETTY"})
+    EchoServers server;
+
+    @Param({"64", "1024", "16384"})
+    int payloadSize;
+
+    @Param({"1", "16", "64"})
+    int connections;
+
+    EchoServers.Running running;
+    EchoClient[] clients;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            messages = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        running = server.start();
+        clients = new EchoClient[connections];
+        for (int i = 0; i < connections; i++) {
+            clients[i] = new EchoClient(running.port(), payloadSize);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (EchoClient client : clients) {
+            client.close();
+        }
+        running.close();
+    }
+
+    @Benchmark
+    public void roundTripAll(Counters counters) throws IOException {
+        for (EchoClient client : clients) {
+            client.send();
+        }
+        for (EchoClient client : clients) {
+            client.receive();
+        }
+        counters.messages += clients.length;
+    }
+}
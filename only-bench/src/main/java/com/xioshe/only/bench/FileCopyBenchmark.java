@@ -0,0 +1,97 @@
+package com.xioshe.only.bench;
+
+import com.xioshe.only.java.base.nio.AsyncFileCopy;
+import com.xioshe.only.java.base.nio.ChannelCopy;
+import com.xioshe.only.java.base.nio.ParallelFileCopy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 大文件复制：单线程读写循环、transferTo、{@link AsyncFileCopy} 流水线与 {@link ParallelFileCopy} 的两种模式
+ * <br/>源文件在 setup 时写好，多次复制后大概率在页缓存中，测的是 CPU 与内存带宽；
+ * 要测设备本身，需要把 fileSizeMb 调到大于内存
+ * <br/>运行：{@code java -jar only-bench/target/benchmarks.jar FileCopyBenchmark}
+ *
+ * @author xioshe 2026-10-18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileCopyBenchmark {
+
+    public enum Copier {
+        SEQUENTIAL, TRANSFER, ASYNC, POSITIONAL, MAPPED
+    }
+
+    @Param({"SEQUENTIAL", "TRANSFER", "ASYNC", "POSITIONAL", "MAPPED"})
+    Copier copier;
+
+    @Param({"256"})
+    int fileSizeMb;
+
+    @Param({"4"})
+    int parallelism;
+
+    @Param({"8"})
+    int chunkSizeMb;
+
+    Path dir;
+    Path source;
+    Path target;
+    ParallelFileCopy parallel;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("file-copy-bench");
+        source = dir.resolve("source");
+        target = dir.resolve("target");
+        byte[] block = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(block);
+        try (var out = FileChannel.open(source, CREATE, WRITE)) {
+            for (int i = 0; i < fileSizeMb; i++) {
+                out.write(ByteBuffer.wrap(block));
+            }
+        }
+        if (copier == Copier.POSITIONAL || copier == Copier.MAPPED) {
+            parallel = new ParallelFileCopy(ParallelFileCopy.Mode.valueOf(copier.name()),
+                    chunkSizeMb * 1024L * 1024, parallelism);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (parallel != null) {
+            parallel.close();
+        }
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public long copy() throws Exception {
+        if (copier == Copier.ASYNC) {
+            // 与并行复制相同的 IO 深度
+            return new AsyncFileCopy(parallelism, 1024 * 1024).copy(source, target).get().bytes();
+        }
+        if (parallel != null) {
+            return parallel.copy(source, target);
+        }
+        try (var src = FileChannel.open(source, READ);
+             var dst = FileChannel.open(target, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            return copier == Copier.SEQUENTIAL ? ChannelCopy.channelCopy(src, dst) : ChannelCopy.copy(src, dst);
+        }
+    }
+}
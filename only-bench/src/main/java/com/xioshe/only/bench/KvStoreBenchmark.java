@@ -0,0 +1,157 @@
+package com.xioshe.only.bench;
+
+import com.xioshe.only.java.base.nio.reactor.KvServer;
+import com.xioshe.only.java.base.nio.reactor.ReactorOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KvServer} 按 SubReactor 分片与共享 ConcurrentHashMap 的吞吐量对比
+ * <br/>每个压测线程一条连接，每次调用流水线发送一批 GET/SET，结果是每秒完成的命令数
+ * <br/>运行：{@code java -jar only-bench/target/benchmarks.jar KvStoreBenchmark}
+ *
+ * @author xioshe 2026-10-18
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class KvStoreBenchmark {
+
+    /**
+     * 每批命令数，其中四分之一是 SET
+     */
+    static final int BATCH = 16;
+    static final int KEYS = 10_000;
+    /**
+     * 预先生成的批次数，循环使用，避免压测线程拼字符串
+     */
+    static final int BATCHES = 256;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"SHARDED", "CONCURRENT"})
+        KvServer.Storage storage;
+
+        @Param({"4"})
+        int subReactors;
+
+        KvServer server;
+        int port;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            server = new KvServer(0, new ReactorOptions().subReactors(subReactors).tcpNoDelay(true), storage);
+            port = server.start();
+            // 预先写入所有 key，GET 都能命中
+            try (var client = new Client(port)) {
+                var sets = new StringBuilder();
+                for (int i = 0; i < KEYS; i++) {
+                    sets.append("SET key:").append(i).append(" value:").append(i).append('\n');
+                }
+                client.roundTrip(sets.toString().getBytes(StandardCharsets.ISO_8859_1), KEYS);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            server.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+        Client client;
+        byte[][] batches;
+        /**
+         * 每批回复的行数：SET 一行，命中的 GET 两行
+         */
+        int[] replyLines;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setup(Server server) throws IOException {
+            client = new Client(server.port);
+            var random = new SplittableRandom(Thread.currentThread().threadId());
+            batches = new byte[BATCHES][];
+            replyLines = new int[BATCHES];
+            for (int b = 0; b < BATCHES; b++) {
+                var batch = new StringBuilder();
+                for (int i = 0; i < BATCH; i++) {
+                    int key = random.nextInt(KEYS);
+                    if (i % 4 == 0) {
+                        batch.append("SET key:").append(key).append(" value:").append(key).append('\n');
+                        replyLines[b] += 1;
+                    } else {
+                        batch.append("GET key:").append(key).append('\n');
+                        replyLines[b] += 2;
+                    }
+                }
+                batches[b] = batch.toString().getBytes(StandardCharsets.ISO_8859_1);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int commands(Connection connection) throws IOException {
+        int b = connection.next++ & (BATCHES - 1);
+        return connection.client.roundTrip(connection.batches[b], connection.replyLines[b]);
+    }
+
+    /**
+     * 阻塞式连接，发出一批命令后按换行数读完回复
+     */
+    static class Client implements AutoCloseable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte[] buffer = new byte[64 * 1024];
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            in = socket.getInputStream();
+            out = socket.getOutputStream();
+        }
+
+        int roundTrip(byte[] commands, int lines) throws IOException {
+            out.write(commands);
+            int total = 0;
+            while (lines > 0) {
+                int n = in.read(buffer);
+                if (n < 0) {
+                    throw new EOFException("Connection closed by server");
+                }
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') {
+                        lines--;
+                    }
+                }
+                total += n;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.xioshe.only.bench;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.xioshe.only.java.base.nio.reactor.MultiThreadReactor;
+import com.xioshe.only.java.base.nio.reactor.ReactorOptions;
+import com.xioshe.only.java.base.nio.reactor.WaitStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件循环等待方式对延迟与 CPU 的影响，服务端只有一个 SubReactor
+ * <br/>roundTrip 输出往返延迟的分位值；roundTripWithCpu 输出吞吐量，附带的 cpuMicros 是进程每秒消耗的 CPU 微秒数，
+ * 1000000 表示占满一个核，其中包含压测线程自身
+ * <br/>运行：{@code java -jar only-bench/target/benchmarks.jar WaitStrategyBenchmark}
+ *
+ * @author xioshe 2026-10-18
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WaitStrategyBenchmark {
+
+    public enum Strategy {
+        BLOCKING(WaitStrategy.blocking()),
+        TIMED(WaitStrategy.timed(1)),
+        BUSY_SPIN(WaitStrategy.busySpin()),
+        SPIN_YIELD_PARK(WaitStrategy.spinYieldPark(1000, 100, TimeUnit.MICROSECONDS.toNanos(50)));
+
+        final WaitStrategy waitStrategy;
+
+        Strategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+        }
+    }
+
+    /**
+     * 每隔多少次调用读一次进程 CPU 时间，读取本身是一次系统调用
+     */
+    static final int CPU_SAMPLE_INTERVAL = 64;
+
+    @Param({"BLOCKING", "TIMED", "BUSY_SPIN", "SPIN_YIELD_PARK"})
+    Strategy strategy;
+
+    @Param({"64", "1024"})
+    int payloadSize;
+
+    MultiThreadReactor reactor;
+    EchoClient client;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class CpuCounters {
+        private final OperatingSystemMXBean os =
+                (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        private long lastCpuNanos;
+        private int calls;
+        public long cpuMicros;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            cpuMicros = 0;
+            calls = 0;
+            lastCpuNanos = os.getProcessCpuTime();
+        }
+
+        void sample() {
+            if (++calls % CPU_SAMPLE_INTERVAL == 0) {
+                long now = os.getProcessCpuTime();
+                cpuMicros += (now - lastCpuNanos) / 1000;
+                lastCpuNanos = now;
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        reactor = new MultiThreadReactor(0, new ReactorOptions()
+                .subReactors(1)
+                .tcpNoDelay(true)
+                .waitStrategy(strategy.waitStrategy));
+        int port = reactor.start();
+        client = new EchoClient(port, payloadSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        reactor.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public int roundTrip() throws IOException {
+        return client.roundTrip();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int roundTripWithCpu(CpuCounters counters) throws IOException {
+        counters.sample();
+        return client.roundTrip();
+    }
+}
@@ -0,0 +1,169 @@
+package com.xioshe.only.java.base.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存、可并发记录的对数-线性直方图，思路与 HdrHistogram 相同
+ * <p>
+ * 值域按 2 的幂分段，每段再等分为 64 个子桶，所以任意值的相对误差不超过 1/64。
+ * 小于 128 的值精确记录。记录一次只是一次数组下标计算加一次原子自增，不分配对象。
+ * <p>
+ * 只有一个线程记录时用 {@link #singleWriter()}：记录改为普通读加 opaque 写，没有原子读改写，其他线程读到的是近似值。
+ * <p>
+ * 单位由调用方决定，通常用纳秒。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    /**
+     * long 最高有效位为 62 时 shift 最大为 56，最大下标为 56 * 64 + 127
+     */
+    static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final boolean singleWriter;
+
+    public LatencyHistogram() {
+        this(false);
+    }
+
+    private LatencyHistogram(boolean singleWriter) {
+        this.singleWriter = singleWriter;
+    }
+
+    /**
+     * @return 只能由同一个线程调用 {@link #record(long)} 的直方图，读取和合并可以在任意线程
+     */
+    public static LatencyHistogram singleWriter() {
+        return new LatencyHistogram(true);
+    }
+
+    /**
+     * 记录一个值，负数按 0 处理
+     *
+     * @param value 例如纳秒延迟
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        if (singleWriter) {
+            int index = indexOf(value);
+            counts.setOpaque(index, counts.getPlain(index) + 1);
+            sum.setOpaque(sum.getPlain() + value);
+            totalCount.setOpaque(totalCount.getPlain() + 1);
+            if (value > max.getPlain()) {
+                max.setOpaque(value);
+            }
+            return;
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        // 绝大多数情况下不会更新 max，先读一次避免无谓的 CAS
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * 查询分位值，返回所在桶的上界，并且不超过记录过的最大值
+     *
+     * @param percentile 0 到 100 之间，例如 99.9
+     * @return 至少有 percentile% 的记录小于等于该值
+     */
+    public long valueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max(1, (long) Math.ceil(p / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 把另一个直方图的记录合并进来
+     *
+     * @param other 不要求停止记录，但合并结果只是近似的快照
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current;
+        while (otherMax > (current = max.get())) {
+            if (max.compareAndSet(current, otherMax)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 清空记录，和并发的 record 之间不是原子的
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // value >= 128 时 shift >= 1，子桶下标落在 [64, 128)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int sub = (int) (value >>> shift);
+        return shift * SUB_BUCKET_HALF + sub;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long sub = index - (long) shift * SUB_BUCKET_HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,228 @@
+package com.xioshe.only.java.base.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个事件循环线程的内部统计，每个循环一份，只由循环线程写入
+ * <p>
+ * 每轮循环记录等待 IO 的时间、处理事件与任务的时间、就绪的 key 数和执行任务前任务队列的深度，
+ * 每次分发记录 handler 的耗时并保留最慢的那个。只有一个写线程，直方图和计数都用 opaque 写发布，
+ * 记录时没有原子读改写、不加锁、不分配对象。
+ * <p>
+ * 用来区分两种情况：等待时间占比很低、每轮就绪的 key 很多，说明循环已经饱和；
+ * 等待时间充足但单次分发的最大耗时很长，说明是个别 handler 太慢；任务队列持续很深，说明提交任务的速度超过了循环的处理能力。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class LoopMetrics implements LoopMetricsMBean {
+
+    private final LatencyHistogram waitNanos = LatencyHistogram.singleWriter();
+    private final LatencyHistogram busyNanos = LatencyHistogram.singleWriter();
+    private final LatencyHistogram readyKeys = LatencyHistogram.singleWriter();
+    private final LatencyHistogram taskQueue = LatencyHistogram.singleWriter();
+    private final LatencyHistogram handlerNanos = LatencyHistogram.singleWriter();
+    /**
+     * 只由循环线程写，用 opaque 写发布
+     */
+    private final AtomicLong backlogLoops = new AtomicLong();
+    /**
+     * 只在刷新最大值时更新，读线程看到的可能比 handlerNanos 的最大值稍旧
+     */
+    private volatile String slowestHandler = "";
+    private volatile long slowestNanos;
+
+    private ObjectName objectName;
+
+    // 记录，只在循环线程中调用
+
+    /**
+     * 一次 select 返回
+     *
+     * @param waitNanos 阻塞或自旋等待的时间
+     * @param ready     就绪的 key 数
+     */
+    public void selected(long waitNanos, int ready) {
+        this.waitNanos.record(waitNanos);
+        readyKeys.record(ready);
+    }
+
+    /**
+     * 一次分发结束
+     *
+     * @param handler 被分发的对象，只在刷新最大耗时时调用它的 toString()
+     */
+    public void dispatched(Object handler, long nanos) {
+        handlerNanos.record(nanos);
+        if (nanos > slowestNanos) {
+            slowestNanos = nanos;
+            slowestHandler = String.valueOf(handler);
+        }
+    }
+
+    /**
+     * 一轮循环结束
+     *
+     * @param busyNanos   处理事件、定时任务与任务的时间
+     * @param queuedTasks 本轮开始执行任务前队列中的任务数
+     * @param backlog     任务数超过单轮上限，本轮执行完后队列中还有剩余
+     */
+    public void loopCompleted(long busyNanos, int queuedTasks, boolean backlog) {
+        this.busyNanos.record(busyNanos);
+        taskQueue.record(queuedTasks);
+        if (backlog) {
+            backlogLoops.setOpaque(backlogLoops.getPlain() + 1);
+        }
+    }
+
+    // 读取
+
+    public Snapshot snapshot() {
+        return new Snapshot(busyNanos.getTotalCount(), getBusyRatio(),
+                waitNanos.valueAtPercentile(50), waitNanos.valueAtPercentile(99),
+                busyNanos.valueAtPercentile(50), busyNanos.valueAtPercentile(99), busyNanos.getMax(),
+                readyKeys.getMean(), readyKeys.getMax(), taskQueue.valueAtPercentile(99), taskQueue.getMax(),
+                backlogLoops.get(),
+                handlerNanos.valueAtPercentile(99), handlerNanos.getMax(), slowestHandler);
+    }
+
+    @Override
+    public long getLoops() {
+        return busyNanos.getTotalCount();
+    }
+
+    @Override
+    public double getBusyRatio() {
+        double busy = busyNanos.getMean() * busyNanos.getTotalCount();
+        double wait = waitNanos.getMean() * waitNanos.getTotalCount();
+        return busy + wait == 0 ? 0 : busy / (busy + wait);
+    }
+
+    @Override
+    public double getWaitP99Micros() {
+        return waitNanos.valueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getBusyP99Micros() {
+        return busyNanos.valueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getBusyMaxMicros() {
+        return busyNanos.getMax() / 1e3;
+    }
+
+    @Override
+    public double getReadyKeysMean() {
+        return readyKeys.getMean();
+    }
+
+    @Override
+    public long getReadyKeysMax() {
+        return readyKeys.getMax();
+    }
+
+    @Override
+    public long getTaskQueueP99() {
+        return taskQueue.valueAtPercentile(99);
+    }
+
+    @Override
+    public long getTaskQueueMax() {
+        return taskQueue.getMax();
+    }
+
+    @Override
+    public long getBacklogLoops() {
+        return backlogLoops.get();
+    }
+
+    @Override
+    public double getHandlerP99Micros() {
+        return handlerNanos.valueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getHandlerMaxMicros() {
+        return handlerNanos.getMax() / 1e3;
+    }
+
+    @Override
+    public String getSlowestHandler() {
+        return slowestHandler;
+    }
+
+    /**
+     * 与并发的记录之间不是原子的，只用于压测分段等场景
+     */
+    @Override
+    public void reset() {
+        waitNanos.reset();
+        busyNanos.reset();
+        readyKeys.reset();
+        taskQueue.reset();
+        handlerNanos.reset();
+        backlogLoops.set(0);
+        slowestHandler = "";
+        slowestNanos = 0;
+    }
+
+    // JMX
+
+    /**
+     * 注册到平台 MBeanServer，ObjectName 为 {@code com.xioshe.only.java:type=LoopMetrics,name=<name>}
+     *
+     * @param name 区分不同的事件循环，例如 Reactor 名加序号
+     * @return this
+     */
+    public synchronized LoopMetrics register(String name) {
+        try {
+            var on = new ObjectName(ServerMetrics.DOMAIN + ":type=LoopMetrics,name=" + ObjectName.quote(name));
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(on)) {
+                server.registerMBean(this, on);
+                objectName = on;
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics " + name, e);
+        }
+        return this;
+    }
+
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // 已经被注销
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * 某一时刻的统计，时间单位为纳秒
+     *
+     * @param busyRatio 处理时间占总时间的比例，接近 1 说明循环已经饱和
+     */
+    public record Snapshot(long loops, double busyRatio, long waitP50, long waitP99,
+                           long busyP50, long busyP99, long busyMax,
+                           double readyKeysMean, long readyKeysMax, long taskQueueP99, long taskQueueMax,
+                           long backlogLoops,
+                           long handlerP99, long handlerMax, String slowestHandler) {
+
+        @Override
+        public String toString() {
+            return String.format("loops=%d busy=%.1f%%%n"
+                            + "wait(us): p50=%.1f p99=%.1f busy(us): p50=%.1f p99=%.1f max=%.1f%n"
+                            + "readyKeys: mean=%.1f max=%d taskQueue: p99=%d max=%d backlogLoops=%d%n"
+                            + "handler(us): p99=%.1f max=%.1f slowest=%s",
+                    loops, busyRatio * 100, waitP50 / 1e3, waitP99 / 1e3, busyP50 / 1e3, busyP99 / 1e3, busyMax / 1e3,
+                    readyKeysMean, readyKeysMax, taskQueueP99, taskQueueMax, backlogLoops,
+                    handlerP99 / 1e3, handlerMax / 1e3, slowestHandler);
+        }
+    }
+}
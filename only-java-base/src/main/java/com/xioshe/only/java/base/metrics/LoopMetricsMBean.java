@@ -0,0 +1,52 @@
+package com.xioshe.only.java.base.metrics;
+
+/**
+ * {@link LoopMetrics} 的 JMX 接口，时间单位为微秒
+ *
+ * @author xioshe 2026-10-18
+ */
+public interface LoopMetricsMBean {
+
+    long getLoops();
+
+    /**
+     * 处理事件与任务的时间占总时间的比例
+     */
+    double getBusyRatio();
+
+    double getWaitP99Micros();
+
+    double getBusyP99Micros();
+
+    double getBusyMaxMicros();
+
+    double getReadyKeysMean();
+
+    long getReadyKeysMax();
+
+    /**
+     * 每轮执行任务前任务队列深度的 99 分位
+     */
+    long getTaskQueueP99();
+
+    long getTaskQueueMax();
+
+    /**
+     * 任务数超过单轮上限、执行完后队列中还有剩余的轮数
+     */
+    long getBacklogLoops();
+
+    double getHandlerP99Micros();
+
+    double getHandlerMaxMicros();
+
+    /**
+     * 单次分发耗时最长的 handler
+     */
+    String getSlowestHandler();
+
+    /**
+     * 清空所有计数
+     */
+    void reset();
+}
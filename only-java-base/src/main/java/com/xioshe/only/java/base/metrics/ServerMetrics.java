@@ -0,0 +1,356 @@
+package com.xioshe.only.java.base.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务端的连接、流量与延迟统计，所有服务实现共用
+ * <p>
+ * 计数器都是 {@link LongAdder}，竞争时自动分散到多个 cell。
+ * 延迟有两种记录方式：事件循环线程各自持有一个 {@link Recorder}，单线程写入，没有原子读改写；
+ * 其他线程（每连接一个线程、工作线程池）调用 {@link #message(long)}，按线程 id 分到多个条带，
+ * 条带之间互不竞争，但同一条带的线程仍然对共享的计数做原子自增。读取时把两者合并。
+ * <p>
+ * 读数有两种方式：{@link #snapshot()} 返回一份不可变的快照；
+ * {@link #register(String)} 注册为 JMX MBean，可以用 JConsole 等工具查看。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class ServerMetrics implements ServerMetricsMBean {
+
+    static final String DOMAIN = "com.xioshe.only.java";
+
+    private static final int STRIPES = Integer.highestOneBit(
+            Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder idleTimeouts = new LongAdder();
+    private final LongAdder readPauses = new LongAdder();
+    private final LongAdder readResumes = new LongAdder();
+    private final LongAdder datagramsIn = new LongAdder();
+    private final LongAdder datagramsOut = new LongAdder();
+    private final LongAdder datagramDrops = new LongAdder();
+    private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(STRIPES);
+    private final CopyOnWriteArrayList<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    private ObjectName objectName;
+
+    // 记录
+
+    public void connectionAccepted() {
+        accepted.increment();
+    }
+
+    public void connectionClosed() {
+        closed.increment();
+    }
+
+    public void bytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void bytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    /**
+     * 连接因为空闲超时被关闭
+     */
+    public void idleTimeout() {
+        idleTimeouts.increment();
+    }
+
+    /**
+     * 连接待发送的数据超过高水位或者积压的请求过多，暂停读取
+     */
+    public void readPaused() {
+        readPauses.increment();
+    }
+
+    /**
+     * 暂停读取的连接恢复读取或者被关闭
+     */
+    public void readResumed() {
+        readResumes.increment();
+    }
+
+    /**
+     * 收到一个 UDP 报文，同时计入流量
+     */
+    public void datagramIn(int bytes) {
+        datagramsIn.increment();
+        bytesIn.add(bytes);
+    }
+
+    /**
+     * 发出一个 UDP 报文，同时计入流量
+     */
+    public void datagramOut(int bytes) {
+        datagramsOut.increment();
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * 发送队列满或者发送失败，丢掉一个 UDP 报文
+     */
+    public void datagramDropped() {
+        datagramDrops.increment();
+    }
+
+    /**
+     * 记录一条消息及其处理耗时，可以在任意线程调用
+     *
+     * @param latencyNanos 从收到到回复完成的纳秒数
+     */
+    public void message(long latencyNanos) {
+        messages.increment();
+        latencyStripe().record(latencyNanos);
+    }
+
+    private LatencyHistogram latencyStripe() {
+        int i = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+        var histogram = latencies.get(i);
+        if (histogram == null) {
+            latencies.compareAndSet(i, null, new LatencyHistogram());
+            histogram = latencies.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * 创建一个只能由一个线程使用的记录器，读取时与条带一起合并
+     *
+     * @return 通常由一个事件循环持有，在循环线程中记录
+     */
+    public Recorder newRecorder() {
+        var recorder = new Recorder();
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * 单写者的消息延迟记录器，见 {@link #newRecorder()}
+     */
+    public final class Recorder {
+        private final LatencyHistogram latency = LatencyHistogram.singleWriter();
+
+        private Recorder() {
+        }
+
+        /**
+         * 同 {@link ServerMetrics#message(long)}，只能在持有该记录器的线程中调用
+         */
+        public void message(long latencyNanos) {
+            messages.increment();
+            latency.record(latencyNanos);
+        }
+    }
+
+    // 读取
+
+    /**
+     * 合并所有条带，得到一份快照
+     */
+    public Snapshot snapshot() {
+        var latency = mergedLatency();
+        long a = accepted.sum();
+        long c = closed.sum();
+        return new Snapshot(a, a - c, c, bytesIn.sum(), bytesOut.sum(), messages.sum(), errors.sum(),
+                idleTimeouts.sum(), readPauses.sum(), datagramsIn.sum(), datagramsOut.sum(), datagramDrops.sum(),
+                latency.valueAtPercentile(50), latency.valueAtPercentile(99),
+                latency.valueAtPercentile(99.9), latency.getMax());
+    }
+
+    private LatencyHistogram mergedLatency() {
+        var merged = new LatencyHistogram();
+        for (int i = 0; i < STRIPES; i++) {
+            var histogram = latencies.get(i);
+            if (histogram != null) {
+                merged.add(histogram);
+            }
+        }
+        for (Recorder recorder : recorders) {
+            merged.add(recorder.latency);
+        }
+        return merged;
+    }
+
+    @Override
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getActive() {
+        return accepted.sum() - closed.sum();
+    }
+
+    @Override
+    public long getClosed() {
+        return closed.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getIdleTimeouts() {
+        return idleTimeouts.sum();
+    }
+
+    @Override
+    public long getReadPauses() {
+        return readPauses.sum();
+    }
+
+    @Override
+    public long getReadPausedConnections() {
+        return readPauses.sum() - readResumes.sum();
+    }
+
+    @Override
+    public long getDatagramsIn() {
+        return datagramsIn.sum();
+    }
+
+    @Override
+    public long getDatagramsOut() {
+        return datagramsOut.sum();
+    }
+
+    @Override
+    public long getDatagramDrops() {
+        return datagramDrops.sum();
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return mergedLatency().valueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return mergedLatency().valueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP999Micros() {
+        return mergedLatency().valueAtPercentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return mergedLatency().getMax() / 1e3;
+    }
+
+    /**
+     * 与并发的记录之间不是原子的，只用于压测分段等场景
+     */
+    @Override
+    public void reset() {
+        accepted.reset();
+        closed.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+        messages.reset();
+        errors.reset();
+        idleTimeouts.reset();
+        readPauses.reset();
+        readResumes.reset();
+        datagramsIn.reset();
+        datagramsOut.reset();
+        datagramDrops.reset();
+        for (int i = 0; i < STRIPES; i++) {
+            var histogram = latencies.get(i);
+            if (histogram != null) {
+                histogram.reset();
+            }
+        }
+        for (Recorder recorder : recorders) {
+            recorder.latency.reset();
+        }
+    }
+
+    // JMX
+
+    /**
+     * 注册到平台 MBeanServer，ObjectName 为 {@code com.xioshe.only.java:type=ServerMetrics,name=<name>}
+     *
+     * @param name 区分不同的服务实例
+     * @return this
+     */
+    public synchronized ServerMetrics register(String name) {
+        try {
+            var on = new ObjectName(DOMAIN + ":type=ServerMetrics,name=" + ObjectName.quote(name));
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(on)) {
+                server.registerMBean(this, on);
+                objectName = on;
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics " + name, e);
+        }
+        return this;
+    }
+
+    public synchronized void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // 已经被注销
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * 某一时刻的统计，延迟单位为纳秒
+     */
+    public record Snapshot(long accepted, long active, long closed, long bytesIn, long bytesOut,
+                           long messages, long errors, long idleTimeouts, long readPauses,
+                           long datagramsIn, long datagramsOut, long datagramDrops,
+                           long p50, long p99, long p999, long max) {
+
+        @Override
+        public String toString() {
+            return String.format("connections: accepted=%d active=%d closed=%d%n"
+                            + "traffic: in=%d bytes out=%d bytes messages=%d errors=%d idleTimeouts=%d readPauses=%d%n"
+                            + "datagrams: in=%d out=%d drops=%d%n"
+                            + "latency(us): p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    accepted, active, closed, bytesIn, bytesOut, messages, errors, idleTimeouts, readPauses,
+                    datagramsIn, datagramsOut, datagramDrops,
+                    p50 / 1e3, p99 / 1e3, p999 / 1e3, max / 1e3);
+        }
+    }
+}
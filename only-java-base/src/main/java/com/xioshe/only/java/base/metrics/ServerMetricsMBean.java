@@ -0,0 +1,60 @@
+package com.xioshe.only.java.base.metrics;
+
+/**
+ * {@link ServerMetrics} 的 JMX 接口，延迟单位为微秒
+ *
+ * @author xioshe 2026-10-18
+ */
+public interface ServerMetricsMBean {
+
+    long getAccepted();
+
+    long getActive();
+
+    long getClosed();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getMessages();
+
+    long getErrors();
+
+    long getIdleTimeouts();
+
+    /**
+     * 因为待发送数据超过高水位而暂停读取的累计次数
+     */
+    long getReadPauses();
+
+    /**
+     * 当前暂停读取的连接数
+     */
+    long getReadPausedConnections();
+
+    /**
+     * 收到的 UDP 报文数，两次读数之差除以间隔即为每秒报文数，下同
+     */
+    long getDatagramsIn();
+
+    long getDatagramsOut();
+
+    /**
+     * 发送队列满或者发送失败而丢弃的 UDP 报文数
+     */
+    long getDatagramDrops();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    double getLatencyMaxMicros();
+
+    /**
+     * 清空所有计数
+     */
+    void reset();
+}
@@ -0,0 +1,106 @@
+package com.xioshe.only.java.base.net.socket;
+
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * 基于 {@link ServerSocket} 的服务的公共生命周期
+ * <p>
+ * 子类只需实现 {@link #serve(ServerSocket)} 中的 accept 循环。
+ * {@link #startServer(int)} 在当前线程中阻塞运行，{@link #start(int)} 在后台线程运行并立即返回。
+ * {@link #stop()} 关闭监听端口，accept 抛出异常后循环退出。
+ *
+ * @author xioshe 2026-10-18
+ */
+public abstract class AbstractSocketServer implements SocketServer {
+
+    private volatile ServerSocket server;
+
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    /**
+     * 是否使用二进制模式的 {@link EchoSocketHandler}
+     */
+    private volatile boolean binary;
+
+    @Override
+    public void startServer(int port) {
+        try {
+            run(bind(port));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int start(int port) throws IOException {
+        ServerSocket ss = bind(port);
+        // 返回前就记下端口，紧接着 stop() 也能关掉它
+        server = ss;
+        Thread acceptor = new Thread(() -> run(ss), getClass().getSimpleName() + "-acceptor");
+        acceptor.start();
+        return ss.getLocalPort();
+    }
+
+    @Override
+    public void stop() {
+        ServerSocket ss = server;
+        if (ss != null) {
+            try {
+                ss.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * 创建监听端口，子类可以覆盖以设置 backlog 等参数
+     *
+     * @param port 0 表示随机端口
+     */
+    protected ServerSocket bind(int port) throws IOException {
+        return new ServerSocket(port);
+    }
+
+    /**
+     * accept 循环，监听端口关闭后应当尽快返回
+     *
+     * @param server 已绑定的监听端口
+     * @throws IOException accept 失败，包括端口被 {@link #stop()} 关闭
+     */
+    protected abstract void serve(ServerSocket server) throws IOException;
+
+    /**
+     * 为新连接创建 handler，分配序号并计入统计
+     */
+    EchoSocketHandler newHandler(Socket socket) {
+        metrics.connectionAccepted();
+        return new EchoSocketHandler(socket, getAndIncreaseSeq(), binary, metrics);
+    }
+
+    private void run(ServerSocket ss) {
+        server = ss;
+        try (ss) {
+            System.out.println("Waiting for accept...");
+            serve(ss);
+        } catch (IOException e) {
+            // stop() 关闭端口导致的异常是正常退出
+            if (!ss.isClosed()) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -1,21 +1,47 @@
 package com.xioshe.only.java.base.net.socket;
 
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
 import java.io.*;
 import java.net.Socket;
 
 /**
  * 从 Socket 中读取消息，并回复相同消息
+ * <p>
+ * 有两种模式：
+ * <ul>
+ *     <li>文本模式，按行解码成 String 后回复，每行都会打印日志</li>
+ *     <li>二进制模式，直接回写原始字节，不解码也不打印日志</li>
+ * </ul>
+ * 文本模式每行算一条消息，流量按字符数近似；二进制模式每次 read 算一条消息。
  *
  * @author xioshe 2022-03-27
  */
-record EchoSocketHandler(Socket incoming, int number) implements Runnable {
+record EchoSocketHandler(Socket incoming, int number, boolean binary, ServerMetrics metrics) implements Runnable {
+
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    EchoSocketHandler(Socket incoming, int number) {
+        this(incoming, number, false);
+    }
+
+    EchoSocketHandler(Socket incoming, int number, boolean binary) {
+        this(incoming, number, binary, new ServerMetrics());
+    }
 
     @Override
     public void run() {
         try {
-            echoThroughSocket();
+            if (binary) {
+                echoBytesThroughSocket();
+            } else {
+                echoThroughSocket();
+            }
         } catch (IOException e) {
+            metrics.error();
             e.printStackTrace();
+        } finally {
+            metrics.connectionClosed();
         }
     }
 
@@ -32,11 +58,40 @@ record EchoSocketHandler(Socket incoming, int number) implements Runnable {
             try (PrintWriter pw = new PrintWriter(out, true)) {
                 pw.println("Hello! Enter BYE to exit.");
                 for (String line; (line = reader.readLine()) != null; ) {
+                    long start = System.nanoTime();
+                    metrics.bytesIn(line.length() + 1);
                     System.out.println("No." + number + " client: " + line);
                     // 回复请求
                     pw.println(line);
+                    metrics.bytesOut(line.length() + 1);
+                    metrics.message(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * 二进制模式，通过一个复用的 byte[] 原样回写
+     * <br/>只有输入流暂时没有更多数据时才 flush，连续到达的数据合并成一次写
+     *
+     * @throws IOException 读输入流写输出流
+     */
+    void echoBytesThroughSocket() throws IOException {
+        try (incoming) {
+            InputStream in = incoming.getInputStream();
+            OutputStream out = new BufferedOutputStream(incoming.getOutputStream(), BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n; (n = in.read(buffer)) != -1; ) {
+                long start = System.nanoTime();
+                out.write(buffer, 0, n);
+                if (in.available() == 0) {
+                    out.flush();
                 }
+                metrics.bytesIn(n);
+                metrics.bytesOut(n);
+                metrics.message(System.nanoTime() - start);
             }
+            out.flush();
         }
     }
 }
@@ -0,0 +1,267 @@
+package com.xioshe.only.java.base.net.socket;
+
+import com.xioshe.only.java.base.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测客户端，在 {@link SimpleClient} 的基础上同时打开多个连接，不断发送固定大小的消息并统计回显延迟
+ * <p>
+ * 每条消息由 payloadSize - 1 个 'x' 加一个换行组成，所以按行回显和按字节回显的服务端都适用，
+ * 包括 net.socket、nio.reactor 以及 only-netty 中的 Echo 服务。
+ * <p>
+ * 两种发送模式：
+ * <ul>
+ *     <li>闭环（rate = 0）：每个连接最多有 pipeline 条消息在途，收到回复才发下一条</li>
+ *     <li>开环（rate > 0）：按固定速率发送，延迟从计划发送时刻算起，
+ *     服务端变慢时排队的时间也计入延迟，避免 coordinated omission</li>
+ * </ul>
+ *
+ * @param serverHost     服务端地址
+ * @param serverPort     服务端端口
+ * @param connections    并发连接数
+ * @param payloadSize    每条消息的字节数，包含末尾的换行
+ * @param pipeline       每个连接最多在途的消息数
+ * @param rate           所有连接合计每秒发送的消息数，0 表示闭环
+ * @param warmup         预热时长，期间的数据不计入结果
+ * @param duration       统计时长
+ * @param skipGreeting   连接后先丢弃一行欢迎语，文本模式的 {@link EchoSocketHandler} 需要
+ * @author xioshe 2026-10-18
+ */
+public record LoadGenerator(String serverHost, int serverPort, int connections, int payloadSize, int pipeline,
+                            long rate, Duration warmup, Duration duration, boolean skipGreeting) {
+
+    /**
+     * 参数形如 {@code --port=8080 --connections=100 --rate=50000}，未给出的使用默认值
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var opts = new HashMap<String, String>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                System.out.println("Usage: " + LoadGenerator.class.getSimpleName()
+                        + " [--host=localhost] [--port=8080] [--connections=16] [--payload=64] [--pipeline=1]"
+                        + " [--rate=0] [--warmup=2] [--duration=10] [--greeting=false]");
+                return;
+            }
+            opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        var generator = new LoadGenerator(
+                opts.getOrDefault("host", "localhost"),
+                Integer.parseInt(opts.getOrDefault("port", "8080")),
+                Integer.parseInt(opts.getOrDefault("connections", "16")),
+                Integer.parseInt(opts.getOrDefault("payload", "64")),
+                Integer.parseInt(opts.getOrDefault("pipeline", "1")),
+                Long.parseLong(opts.getOrDefault("rate", "0")),
+                Duration.ofSeconds(Long.parseLong(opts.getOrDefault("warmup", "2"))),
+                Duration.ofSeconds(Long.parseLong(opts.getOrDefault("duration", "10"))),
+                Boolean.parseBoolean(opts.getOrDefault("greeting", "false")));
+        System.out.println(generator.run());
+    }
+
+    public LoadGenerator {
+        if (connections <= 0 || payloadSize <= 0 || pipeline <= 0 || rate < 0) {
+            throw new IllegalArgumentException("connections, payloadSize and pipeline must be positive, rate must not be negative");
+        }
+    }
+
+    /**
+     * 执行一轮压测，阻塞到预热和统计时长结束
+     *
+     * @return 统计结果
+     */
+    public Report run() throws IOException, InterruptedException {
+        var histogram = new LatencyHistogram();
+        var messages = new LongAdder();
+        var payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'x');
+        payload[payloadSize - 1] = '\n';
+        // 开环时每个连接的发送间隔
+        long intervalNanos = rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(connections) / rate;
+
+        List<Connection> conns = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                conns.add(new Connection(new Socket(serverHost, serverPort), payload, intervalNanos, histogram, messages));
+            }
+            for (Connection conn : conns) {
+                conn.start();
+            }
+
+            TimeUnit.NANOSECONDS.sleep(warmup.toNanos());
+            histogram.reset();
+            messages.reset();
+            long begin = System.nanoTime();
+            TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+            long count = messages.sum();
+            long elapsed = System.nanoTime() - begin;
+
+            for (Connection conn : conns) {
+                conn.stop();
+            }
+            return new Report(connections, payloadSize, pipeline, rate, count, elapsed,
+                    histogram.valueAtPercentile(50), histogram.valueAtPercentile(99),
+                    histogram.valueAtPercentile(99.9), histogram.getMax());
+        } finally {
+            for (Connection conn : conns) {
+                conn.close();
+            }
+        }
+    }
+
+    /**
+     * 一次压测的结果，延迟单位为纳秒
+     */
+    public record Report(int connections, int payloadSize, int pipeline, long rate, long messages, long elapsedNanos,
+                         long p50, long p99, long p999, long max) {
+
+        public double messagesPerSecond() {
+            return messages * 1e9 / elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return messagesPerSecond() * payloadSize / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d connections, %d bytes payload, pipeline %d, %s%n"
+                            + "throughput: %.0f msg/s, %.2f MiB/s%n"
+                            + "latency(us): p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    connections, payloadSize, pipeline, rate == 0 ? "closed loop" : "open loop at " + rate + " msg/s",
+                    messagesPerSecond(), megabytesPerSecond(),
+                    p50 / 1e3, p99 / 1e3, p999 / 1e3, max / 1e3);
+        }
+    }
+
+    /**
+     * 一个连接，写和读各用一个虚拟线程
+     * <br/>回显按顺序返回，所以只需记录每条在途消息的发送时刻，按收到的字节数依次出队
+     */
+    private class Connection {
+        final Socket socket;
+        final byte[] payload;
+        final long intervalNanos;
+        final LatencyHistogram histogram;
+        final LongAdder messages;
+
+        /**
+         * 在途消息的发送时刻，环形队列，写线程入队读线程出队
+         */
+        final AtomicLongArray sendTimes = new AtomicLongArray(pipeline);
+        final Semaphore inFlight = new Semaphore(pipeline);
+        volatile boolean running = true;
+        Thread writer;
+        Thread reader;
+
+        Connection(Socket socket, byte[] payload, long intervalNanos, LatencyHistogram histogram, LongAdder messages)
+                throws IOException {
+            this.socket = socket;
+            this.payload = payload;
+            this.intervalNanos = intervalNanos;
+            this.histogram = histogram;
+            this.messages = messages;
+            socket.setTcpNoDelay(true);
+        }
+
+        void start() throws IOException {
+            if (skipGreeting) {
+                InputStream in = socket.getInputStream();
+                for (int b; (b = in.read()) != -1 && b != '\n'; ) {
+                    // 丢弃欢迎语
+                }
+            }
+            reader = Thread.ofVirtual().start(this::readLoop);
+            writer = Thread.ofVirtual().start(this::writeLoop);
+        }
+
+        void writeLoop() {
+            try {
+                OutputStream out = socket.getOutputStream();
+                long next = System.nanoTime();
+                for (long seq = 0; running; seq++) {
+                    long sendTime;
+                    if (intervalNanos > 0) {
+                        // 开环：按计划时刻发送，延迟从计划时刻开始计算
+                        next += intervalNanos;
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        sendTime = next;
+                        inFlight.acquire();
+                    } else {
+                        inFlight.acquire();
+                        sendTime = System.nanoTime();
+                    }
+                    sendTimes.set((int) (seq % pipeline), sendTime);
+                    out.write(payload);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void readLoop() {
+            try {
+                InputStream in = socket.getInputStream();
+                var buffer = new byte[64 * 1024];
+                int remaining = payloadSize;
+                long seq = 0;
+                for (int n; (n = in.read(buffer)) != -1; ) {
+                    // 一次 read 可能包含多条回复，也可能只有半条
+                    while (n >= remaining) {
+                        n -= remaining;
+                        remaining = payloadSize;
+                        long sendTime = sendTimes.get((int) (seq++ % pipeline));
+                        histogram.record(System.nanoTime() - sendTime);
+                        messages.increment();
+                        inFlight.release();
+                    }
+                    remaining -= n;
+                }
+                if (running) {
+                    System.out.println("Connection closed by server: " + socket.getLocalSocketAddress());
+                }
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            writer.interrupt();
+            writer.join();
+            // 等在途的回复收完再关闭
+            inFlight.tryAcquire(pipeline, 1, TimeUnit.SECONDS);
+        }
+
+        void close() {
+            running = false;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
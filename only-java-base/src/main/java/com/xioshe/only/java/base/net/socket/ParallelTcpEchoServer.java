@@ -10,7 +10,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  *
  * @author xioshe 2021-02-18
  */
-public class ParallelTcpEchoServer implements SocketServer {
+public class ParallelTcpEchoServer extends AbstractSocketServer {
 
     private final AtomicInteger number = new AtomicInteger(0);
 
@@ -19,19 +19,14 @@ public class ParallelTcpEchoServer implements SocketServer {
     }
 
     @Override
-    public void startServer(int port) {
-        try (ServerSocket server = new ServerSocket(port)) {
-            System.out.println("Waiting for accept...");
-            // 提供一个终止循环的方式
-            while (!Thread.currentThread().isInterrupted()) {
-                // 不能用 try-with-resource，否则子线程执行时 Socket 已经关闭了
-                Socket incoming = server.accept();
-                System.out.println("Accepted a connection, number is " + getSeq());
-                EchoSocketHandler handler = new EchoSocketHandler(incoming, getAndIncreaseSeq());
-                new Thread(handler).start();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    protected void serve(ServerSocket server) throws IOException {
+        // 提供一个终止循环的方式
+        while (!Thread.currentThread().isInterrupted()) {
+            // 不能用 try-with-resource，否则子线程执行时 Socket 已经关闭了
+            Socket incoming = server.accept();
+            System.out.println("Accepted a connection, number is " + getSeq());
+            EchoSocketHandler handler = newHandler(incoming);
+            new Thread(handler).start();
         }
     }
 
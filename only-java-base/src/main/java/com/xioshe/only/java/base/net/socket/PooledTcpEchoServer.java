@@ -0,0 +1,195 @@
+package com.xioshe.only.java.base.net.socket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用有界线程池处理连接，过载时按策略拒绝，而不是无限制地创建线程
+ * <p>
+ * 线程池先用满 core 线程，再填满等待队列，最后才扩到 max 线程，
+ * 都满了以后由 {@link RejectPolicy} 决定如何处理新连接。
+ * <p>
+ * 线程池在每次开始 accept 时创建，{@link #stop()} 后关闭，之后可以再次启动。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class PooledTcpEchoServer extends AbstractSocketServer {
+
+    static final String BUSY_MESSAGE = "Server busy, try again later.";
+
+    /**
+     * 线程池与队列都满时的处理方式
+     */
+    public enum RejectPolicy {
+        /**
+         * 直接关闭连接
+         */
+        REFUSE,
+        /**
+         * 回复一行 busy 消息后关闭连接
+         */
+        BUSY,
+        /**
+         * 在 accept 线程上等待队列空位，超时后按 BUSY 处理。
+         * 等待期间不再 accept，新连接堆积在内核的 backlog 里，形成反压；
+         * 每个等不到空位的连接都会让 accept 线程阻塞 waitMillis，持续过载时接受新连接的速度随之下降
+         */
+        WAIT
+    }
+
+    public static void main(String[] args) {
+        var server = new PooledTcpEchoServer(4, 16, 64, RejectPolicy.BUSY, 0);
+        server.getMetrics().register("PooledTcpEchoServer");
+        server.startServer(8080);
+    }
+
+    private final AtomicInteger number = new AtomicInteger(0);
+
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    private final int corePoolSize;
+    private final int maxPoolSize;
+    private final int queueCapacity;
+    private final RejectPolicy policy;
+    private final long waitMillis;
+    /**
+     * 当前一次运行的线程池，还没启动时为 null
+     */
+    private volatile ThreadPoolExecutor workerPool;
+
+    /**
+     * @param corePoolSize  常驻线程数
+     * @param maxPoolSize   最大线程数
+     * @param queueCapacity 等待处理的连接数上限
+     * @param policy        拒绝策略
+     * @param waitMillis    {@link RejectPolicy#WAIT} 时等待队列空位的时长，也是每个被拒绝的连接阻塞 accept 的时长
+     */
+    public PooledTcpEchoServer(int corePoolSize, int maxPoolSize, int queueCapacity,
+                               RejectPolicy policy, long waitMillis) {
+        this.corePoolSize = corePoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.waitMillis = waitMillis;
+    }
+
+    @Override
+    protected void serve(ServerSocket server) throws IOException {
+        var threadNumber = new AtomicInteger(0);
+        var pool = new ThreadPoolExecutor(corePoolSize, maxPoolSize,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "echo-worker-" + threadNumber.getAndIncrement()),
+                new Rejecter());
+        workerPool = pool;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Socket incoming = server.accept();
+                pool.execute(new Connection(newHandler(incoming)));
+            }
+        } finally {
+            // 只关闭本次运行的线程池，不影响之后重新启动的
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public int getAndIncreaseSeq() {
+        return number.getAndIncrement();
+    }
+
+    @Override
+    public int getSeq() {
+        return number.intValue();
+    }
+
+    /**
+     * @return 已接受但还在排队的连接数
+     */
+    public int getQueued() {
+        ThreadPoolExecutor pool = workerPool;
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    /**
+     * @return 正在处理的连接数
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return 累计被拒绝的连接数
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 包装 handler，记录活跃连接数，并在拒绝时能拿到 Socket
+     */
+    class Connection implements Runnable {
+        final EchoSocketHandler handler;
+
+        Connection(EchoSocketHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            active.incrementAndGet();
+            try {
+                handler.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 在 accept 线程中执行，所以 WAIT 策略会阻塞 accept
+     */
+    class Rejecter implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            var connection = (Connection) r;
+            if (policy == RejectPolicy.WAIT && !executor.isShutdown()) {
+                try {
+                    if (executor.getQueue().offer(r, waitMillis, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            rejected.incrementAndGet();
+            reject(connection.handler.incoming(), policy != RejectPolicy.REFUSE);
+            getMetrics().connectionClosed();
+        }
+
+        private void reject(Socket socket, boolean replyBusy) {
+            try (socket) {
+                if (replyBusy) {
+                    OutputStream out = socket.getOutputStream();
+                    out.write((BUSY_MESSAGE + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } else {
+                    // RST 而不是 FIN，客户端立刻感知到拒绝
+                    socket.setSoLinger(true, 0);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
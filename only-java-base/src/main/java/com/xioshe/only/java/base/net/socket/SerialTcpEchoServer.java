@@ -10,7 +10,7 @@ import java.net.Socket;
  *
  * @author xioshe 2022-03-03
  */
-public class SerialTcpEchoServer implements SocketServer {
+public class SerialTcpEchoServer extends AbstractSocketServer {
 
     private int number = 0;
 
@@ -19,20 +19,13 @@ public class SerialTcpEchoServer implements SocketServer {
     }
 
     @Override
-    public void startServer(int port) {
-        try (ServerSocket server = new ServerSocket(port)) {
-            System.out.println("Waiting for accept...");
-
-            while (true) {
-                // 阻塞等待
-                try (Socket socket = server.accept()) {
-                    System.out.println("Accepted a connection, sequence number is " + getSeq());
-                    var handler = new EchoSocketHandler(socket, getAndIncreaseSeq());
-                    handler.echoThroughSocket();
-                }
+    protected void serve(ServerSocket server) throws IOException {
+        while (true) {
+            // 阻塞等待
+            try (Socket socket = server.accept()) {
+                System.out.println("Accepted a connection, sequence number is " + getSeq());
+                newHandler(socket).run();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
 
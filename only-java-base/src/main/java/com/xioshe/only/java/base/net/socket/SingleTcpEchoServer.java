@@ -10,7 +10,7 @@ import java.net.Socket;
  *
  * @author xioshe 2021-02-12
  */
-public class SingleTcpEchoServer implements SocketServer {
+public class SingleTcpEchoServer extends AbstractSocketServer {
 
 
     public static void main(String[] args) {
@@ -19,18 +19,11 @@ public class SingleTcpEchoServer implements SocketServer {
 
 
     @Override
-    public void startServer(int port) {
-        try (ServerSocket server = new ServerSocket(port)) {
-            System.out.println("Waiting for accept...");
-            // 阻塞等待
-            try (Socket socket = server.accept()) {
-                System.out.println("Accepted a connection.");
-                var handler = new EchoSocketHandler(socket, getAndIncreaseSeq());
-                handler.echoThroughSocket();
-            }
-        } catch (IOException e) {
-            // new ss
-            e.printStackTrace();
+    protected void serve(ServerSocket server) throws IOException {
+        // 阻塞等待
+        try (Socket socket = server.accept()) {
+            System.out.println("Accepted a connection.");
+            newHandler(socket).run();
         }
     }
 
@@ -1,5 +1,7 @@
 package com.xioshe.only.java.base.net.socket;
 
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
 import java.io.*;
 import java.net.Socket;
 
@@ -17,6 +19,27 @@ public interface SocketServer {
      */
     void startServer(int port);
 
+    /**
+     * 在后台线程启动服务，端口绑定完成后立即返回
+     *
+     * @param port 服务端口号，0 表示随机端口
+     * @return 实际绑定的端口号
+     * @throws IOException 端口绑定失败
+     */
+    int start(int port) throws IOException;
+
+    /**
+     * 停止接受新连接
+     */
+    void stop();
+
+    /**
+     * 服务的运行统计，可以调用 {@link ServerMetrics#register(String)} 暴露到 JMX
+     *
+     * @return 本服务实例的统计
+     */
+    ServerMetrics getMetrics();
+
     /**
      * 连接序号 + 1
      *
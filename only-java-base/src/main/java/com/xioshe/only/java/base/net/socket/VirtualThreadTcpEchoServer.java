@@ -0,0 +1,99 @@
+package com.xioshe.only.java.base.net.socket;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个连接一个虚拟线程，保留阻塞式的 handler 写法
+ * <p>
+ * 虚拟线程阻塞在 Socket 读写上时会从载体线程（carrier）上卸载，
+ * 所以少量载体线程就能挂住大量空闲连接，不必为每个连接付出平台线程的栈内存和上下文切换。
+ * <p>
+ * 载体线程池的大小由 JDK 的调度器参数决定，只在第一个虚拟线程创建前设置才生效：
+ * <ul>
+ *     <li>{@code jdk.virtualThreadScheduler.parallelism}，默认为 CPU 核数</li>
+ *     <li>{@code jdk.virtualThreadScheduler.maxPoolSize}，载体线程被 pin 住时允许补偿的上限</li>
+ * </ul>
+ *
+ * @author xioshe 2026-10-18
+ */
+public class VirtualThreadTcpEchoServer extends AbstractSocketServer {
+
+    static final String PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+    static final String MAX_POOL_SIZE = "jdk.virtualThreadScheduler.maxPoolSize";
+
+    private final AtomicInteger number = new AtomicInteger(0);
+
+    private final int backlog;
+
+    public static void main(String[] args) {
+        // 可选参数：载体线程数
+        if (args.length > 0) {
+            useCarrierThreads(Integer.parseInt(args[0]));
+        }
+        var server = new VirtualThreadTcpEchoServer();
+        server.getMetrics().register("VirtualThreadTcpEchoServer");
+        server.startServer(8080);
+    }
+
+    public VirtualThreadTcpEchoServer() {
+        this(50);
+    }
+
+    /**
+     * @param backlog 等待 accept 的连接队列长度，连接风暴时需要调大
+     */
+    public VirtualThreadTcpEchoServer(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * 设置载体线程池大小，必须在任何虚拟线程启动之前调用，否则不生效
+     *
+     * @param parallelism 载体线程数
+     */
+    public static void useCarrierThreads(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        System.setProperty(PARALLELISM, String.valueOf(parallelism));
+        // maxPoolSize 不能小于 parallelism
+        int maxPoolSize = Integer.getInteger(MAX_POOL_SIZE, 256);
+        System.setProperty(MAX_POOL_SIZE, String.valueOf(Math.max(parallelism, maxPoolSize)));
+    }
+
+    @Override
+    protected ServerSocket bind(int port) throws IOException {
+        return new ServerSocket(port, backlog);
+    }
+
+    @Override
+    protected void serve(ServerSocket server) throws IOException {
+        var factory = Thread.ofVirtual().name("echo-", 0).factory();
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(factory);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // 交给虚拟线程后由 handler 负责关闭 Socket
+                Socket incoming = server.accept();
+                executor.execute(newHandler(incoming));
+            }
+        } finally {
+            // close() 会等待所有连接结束，停止服务时直接中断，阻塞在 Socket 上的虚拟线程会关闭连接并退出
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public int getAndIncreaseSeq() {
+        return number.getAndIncrement();
+    }
+
+    @Override
+    public int getSeq() {
+        return number.intValue();
+    }
+}
@@ -0,0 +1,280 @@
+package com.xioshe.only.java.base.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 基于 {@link AsynchronousFileChannel} 的流水线复制
+ * <p>
+ * {@link ChannelCopy} 读完一块再写一块，读的时候写端空闲，写的时候读端空闲。
+ * 这里准备 depth 块直接内存，每块依次领取文件的下一段：读满后按同一位置写出，写完再领下一段。
+ * 读写都按绝对位置进行，不需要按顺序完成，同时最多有 depth 个 IO 在途，读与写的延迟相互重叠。
+ * <p>
+ * 统计两种停顿：读端停顿是所有 buffer 都在写、没有 buffer 可以继续读，说明写得慢；
+ * 写端停顿是没有在途的写、只能等读完成，说明读得慢。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class AsyncFileCopy {
+
+    static final int DEFAULT_DEPTH = 4;
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final int depth;
+    private final int bufferSize;
+
+    public AsyncFileCopy() {
+        this(DEFAULT_DEPTH, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param depth      buffer 数，也是最多在途的 IO 数
+     * @param bufferSize 每块 buffer 的大小，也是每次读写的最大字节数
+     */
+    public AsyncFileCopy(int depth, int bufferSize) {
+        if (depth <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("depth and bufferSize must be positive");
+        }
+        this.depth = depth;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * 开始复制，立即返回。每次复制单独分配 buffer，同一个实例可以同时复制多个文件
+     *
+     * @return 全部写完、两端关闭后完成；任意一次读写失败时以该异常结束
+     */
+    public CompletableFuture<Stats> copy(Path source, Path target) {
+        AsynchronousFileChannel src = null;
+        try {
+            src = AsynchronousFileChannel.open(source, READ);
+            var dst = AsynchronousFileChannel.open(target, CREATE, WRITE, TRUNCATE_EXISTING);
+            var copy = new Copy(src, dst, src.size());
+            copy.start();
+            return copy.result;
+        } catch (IOException e) {
+            if (src != null) {
+                try {
+                    src.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @param readStalls  读完成后没有其他在途的读、又没有空闲 buffer 的次数
+     * @param writeStalls 写完成后没有其他在途的写、只能等读的次数
+     */
+    public record Stats(long bytes, long elapsedNanos, long reads, long writes, long readStalls, long writeStalls) {
+
+        @Override
+        public String toString() {
+            return String.format("bytes=%d elapsed=%.1fms reads=%d writes=%d readStalls=%d writeStalls=%d",
+                    bytes, elapsedNanos / 1e6, reads, writes, readStalls, writeStalls);
+        }
+    }
+
+    /**
+     * 一块 buffer 与它当前负责的文件段
+     */
+    static final class Slot {
+        final ByteBuffer buffer;
+        long position;
+
+        Slot(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * 一次复制的状态，回调在通道的线程池中执行，状态变更都在 this 上同步
+     */
+    final class Copy {
+        final AsynchronousFileChannel src;
+        final AsynchronousFileChannel dst;
+        final long size;
+        final long startNanos = System.nanoTime();
+        final CompletableFuture<Stats> result = new CompletableFuture<>();
+        /**
+         * 下一段的起始位置
+         */
+        long next;
+        int readsInFlight;
+        int writesInFlight;
+        long bytes;
+        long reads;
+        long writes;
+        long readStalls;
+        long writeStalls;
+        Throwable failure;
+
+        final CompletionHandler<Integer, Slot> onRead = new CompletionHandler<>() {
+            @Override
+            public void completed(Integer n, Slot slot) {
+                readCompleted(n, slot);
+            }
+
+            @Override
+            public void failed(Throwable exc, Slot slot) {
+                synchronized (Copy.this) {
+                    readsInFlight--;
+                    fail(exc);
+                }
+            }
+        };
+
+        final CompletionHandler<Integer, Slot> onWrite = new CompletionHandler<>() {
+            @Override
+            public void completed(Integer n, Slot slot) {
+                writeCompleted(n, slot);
+            }
+
+            @Override
+            public void failed(Throwable exc, Slot slot) {
+                synchronized (Copy.this) {
+                    writesInFlight--;
+                    fail(exc);
+                }
+            }
+        };
+
+        Copy(AsynchronousFileChannel src, AsynchronousFileChannel dst, long size) {
+            this.src = src;
+            this.dst = dst;
+            this.size = size;
+        }
+
+        synchronized void start() {
+            for (int i = 0; i < depth && next < size; i++) {
+                readNext(new Slot(ByteBuffer.allocateDirect(bufferSize)));
+            }
+            finishIfIdle();
+        }
+
+        /**
+         * 让 slot 领取下一段并开始读
+         */
+        private void readNext(Slot slot) {
+            int length = (int) Math.min(bufferSize, size - next);
+            slot.position = next;
+            next += length;
+            slot.buffer.clear().limit(length);
+            read(slot);
+        }
+
+        private void read(Slot slot) {
+            readsInFlight++;
+            try {
+                src.read(slot.buffer, slot.position + slot.buffer.position(), slot, onRead);
+            } catch (RuntimeException e) {
+                readsInFlight--;
+                fail(e);
+            }
+        }
+
+        private void write(Slot slot) {
+            writesInFlight++;
+            try {
+                dst.write(slot.buffer, slot.position + slot.buffer.position(), slot, onWrite);
+            } catch (RuntimeException e) {
+                writesInFlight--;
+                fail(e);
+            }
+        }
+
+        synchronized void readCompleted(int n, Slot slot) {
+            readsInFlight--;
+            reads++;
+            if (failure != null) {
+                finishIfIdle();
+                return;
+            }
+            if (n < 0) {
+                fail(new IOException("Source truncated at " + (slot.position + slot.buffer.position())));
+                return;
+            }
+            if (slot.buffer.hasRemaining()) {
+                // 读到的比请求的少，接着读完这一段
+                read(slot);
+                return;
+            }
+            slot.buffer.flip();
+            write(slot);
+            if (readsInFlight == 0 && next < size) {
+                readStalls++;
+            }
+        }
+
+        synchronized void writeCompleted(int n, Slot slot) {
+            writesInFlight--;
+            writes++;
+            bytes += n;
+            if (failure != null) {
+                finishIfIdle();
+                return;
+            }
+            if (slot.buffer.hasRemaining()) {
+                write(slot);
+                return;
+            }
+            if (next < size) {
+                readNext(slot);
+            }
+            if (writesInFlight == 0 && readsInFlight > 0) {
+                writeStalls++;
+            }
+            finishIfIdle();
+        }
+
+        private void fail(Throwable exc) {
+            if (failure == null) {
+                failure = exc;
+            }
+            finishIfIdle();
+        }
+
+        /**
+         * 出错或者全部写完，并且没有在途的 IO 时关闭两端并结束
+         */
+        private void finishIfIdle() {
+            if (readsInFlight > 0 || writesInFlight > 0 || result.isDone()) {
+                return;
+            }
+            if (failure == null && next < size) {
+                return;
+            }
+            // 分开关闭，一端关闭失败也要关另一端
+            close(src);
+            close(dst);
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(new Stats(bytes, System.nanoTime() - startNanos, reads, writes, readStalls, writeStalls));
+            }
+        }
+
+        /**
+         * 关闭失败的异常作为结果，已经出错时附加到原来的异常上
+         */
+        private void close(AsynchronousFileChannel channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+    }
+}
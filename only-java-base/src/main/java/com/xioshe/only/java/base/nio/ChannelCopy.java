@@ -1,40 +1,291 @@
 package com.xioshe.only.java.base.nio;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * NIO channel-channel copy, but not zero-copy
+ * NIO channel-channel copy
+ * <p>
+ * 任意一端是 {@link FileChannel} 时使用 transferTo/transferFrom，由内核直接搬运数据（sendfile、copy_file_range 等），
+ * 不经过用户态 buffer；其他情况退回 16K 堆内 buffer 的读写循环。
+ * <p>
+ * 都按 channel 的当前位置开始复制，结束后位置移到复制的末尾，和读写循环的效果一致。
+ * 要求 channel 是阻塞模式，非阻塞 channel 返回 0 时会被当成数据结束。
+ * <p>
+ * 带 {@link CopyStage} 的复制在一遍读写中完成校验、压缩等变换，数据必须经过用户态，不使用 transferTo。
+ * 有计算量大的 stage 时，读取留在调用线程，变换与写入交给一个流水线任务，两者通过几块轮换的 buffer 交接。
+ * 流水线任务在调用方给的 {@link Executor} 中执行，没有指定时使用共享的守护线程池，不为每次复制创建线程。
  *
  * @author xioshe 2022-04-29
  */
 public class ChannelCopy {
 
+    /**
+     * transferFrom 单次请求的字节数，源不是文件时读不到这么多会提前返回
+     */
+    static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    static final int STAGE_BUFFER_SIZE = 64 * 1024;
+    /**
+     * 流水线中轮换的 buffer 数，读取最多领先写入这么多块
+     */
+    static final int PIPELINE_BUFFERS = 4;
+    /**
+     * 通知流水线线程源已读完
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    /**
+     * 流水线任务退出时放回空闲队列，唤醒还在等 buffer 的读取
+     */
+    private static final ByteBuffer STOPPED = ByteBuffer.allocate(0);
+    /**
+     * 默认的流水线线程池，线程空闲一段时间后回收
+     */
+    private static final Executor PIPELINE_EXECUTOR = Executors.newCachedThreadPool(
+            r -> Thread.ofPlatform().name("copy-pipeline").daemon().unstarted(r));
+
     public static void copy() throws IOException {
         var source = Channels.newChannel(System.in);
         var dest = Channels.newChannel(System.out);
         try (source;dest){
-            channelCopy(source, dest);
+            copy(source, dest);
+        }
+    }
+
+    /**
+     * 从 source 当前位置复制到结束，按两端的类型选择复制方式
+     *
+     * @return 复制的字节数
+     */
+    public static long copy(ReadableByteChannel source, WritableByteChannel dest) throws IOException {
+        if (source instanceof FileChannel file) {
+            return transferTo(file, dest);
+        }
+        if (dest instanceof FileChannel file) {
+            return transferFrom(source, file);
+        }
+        return channelCopy(source, dest);
+    }
+
+    /**
+     * 从 source 当前位置复制到结束，每块数据依次经过 stages 再写入 dest
+     *
+     * @param stages 为空时等同于 {@link #copy(ReadableByteChannel, WritableByteChannel)}
+     * @return 写入 dest 的字节数
+     */
+    public static long copy(ReadableByteChannel source, WritableByteChannel dest, CopyStage... stages)
+            throws IOException {
+        return copy(source, dest, PIPELINE_EXECUTOR, stages);
+    }
+
+    /**
+     * 同 {@link #copy(ReadableByteChannel, WritableByteChannel, CopyStage...)}
+     *
+     * @param executor 有计算量大的 stage 时执行流水线任务，任务会阻塞等待数据，需要能为它提供一个单独的线程
+     */
+    public static long copy(ReadableByteChannel source, WritableByteChannel dest, Executor executor,
+                            CopyStage... stages) throws IOException {
+        if (stages.length == 0) {
+            return copy(source, dest);
+        }
+        long[] written = {0};
+        // sinks[i] 是第 i 个 stage 的入口，最后一个写入 dest
+        CopyStage.Sink[] sinks = new CopyStage.Sink[stages.length + 1];
+        sinks[stages.length] = buffer -> {
+            while (buffer.hasRemaining()) {
+                written[0] += dest.write(buffer);
+            }
+        };
+        boolean cpuHeavy = false;
+        for (int i = stages.length - 1; i >= 0; i--) {
+            CopyStage stage = stages[i];
+            CopyStage.Sink next = sinks[i + 1];
+            sinks[i] = buffer -> stage.process(buffer, next);
+            cpuHeavy |= stage.cpuHeavy();
+        }
+        try {
+            if (cpuHeavy) {
+                pipelined(source, stages, sinks, executor);
+            } else {
+                var buffer = ByteBuffer.allocate(STAGE_BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    sinks[0].accept(buffer);
+                    buffer.clear();
+                }
+                finish(stages, sinks);
+            }
+        } finally {
+            for (CopyStage stage : stages) {
+                stage.release();
+            }
+        }
+        return written[0];
+    }
+
+    private static void finish(CopyStage[] stages, CopyStage.Sink[] sinks) throws IOException {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i].finish(sinks[i + 1]);
+        }
+    }
+
+    /**
+     * 调用线程读，流水线任务变换并写入。出错后流水线任务不再处理，只归还 buffer，读取随之停止；
+     * 任务因为任何原因退出都会放回 STOPPED，读取不会一直等下去
+     */
+    private static void pipelined(ReadableByteChannel source, CopyStage[] stages, CopyStage.Sink[] sinks,
+                                  Executor executor) throws IOException {
+        // 多留一个位置给 STOPPED
+        BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(PIPELINE_BUFFERS + 1);
+        // 多留一个位置给 END，放入时不会阻塞
+        BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(PIPELINE_BUFFERS + 1);
+        for (int i = 0; i < PIPELINE_BUFFERS; i++) {
+            free.add(ByteBuffer.allocate(STAGE_BUFFER_SIZE));
+        }
+        var error = new AtomicReference<Throwable>();
+        var pipeline = new FutureTask<Void>(() -> {
+            try {
+                for (ByteBuffer buffer; (buffer = full.take()) != END; ) {
+                    if (error.get() == null) {
+                        try {
+                            sinks[0].accept(buffer);
+                        } catch (Throwable e) {
+                            // 包括 Deflater 内存不足这类 Error
+                            error.compareAndSet(null, e);
+                        }
+                    }
+                    free.add(buffer);
+                }
+                if (error.get() == null) {
+                    finish(stages, sinks);
+                }
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            } finally {
+                free.add(STOPPED);
+            }
+        }, null);
+        try {
+            executor.execute(pipeline);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Pipeline executor rejected the copy", e);
+        }
+        try {
+            while (error.get() == null) {
+                ByteBuffer buffer = free.take();
+                if (buffer == STOPPED) {
+                    break;
+                }
+                if (source.read(buffer.clear()) == -1) {
+                    break;
+                }
+                full.add(buffer.flip());
+            }
+        } catch (IOException e) {
+            error.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            pipeline.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free buffer");
+        } finally {
+            full.add(END);
+        }
+        try {
+            pipeline.get();
+        } catch (InterruptedException e) {
+            pipeline.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the pipeline");
+        } catch (ExecutionException e) {
+            // 任务自己捕获了所有异常，不会走到这里
+            error.compareAndSet(null, e.getCause());
+        }
+        Throwable failure = error.get();
+        if (failure instanceof IOException e) {
+            throw e;
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * 源是文件，按文件大小循环 transferTo，一次可能只传一部分，Linux 上单次最多约 2G
+     */
+    static long transferTo(FileChannel source, WritableByteChannel dest) throws IOException {
+        long start = source.position();
+        long position = start;
+        long size = source.size();
+        while (position < size) {
+            long n = source.transferTo(position, size - position, dest);
+            if (n <= 0) {
+                // 文件被截断，或者目标暂时写不进去，剩下的交给读写循环
+                break;
+            }
+            position += n;
+        }
+        // transferTo 不改变 channel 的位置
+        source.position(position);
+        if (position < size) {
+            position += channelCopy(source, dest);
+        }
+        return position - start;
+    }
+
+    /**
+     * 目标是文件，循环 transferFrom 直到源读完。源也是文件时由内核复制，否则 JDK 内部用直接内存中转
+     */
+    static long transferFrom(ReadableByteChannel source, FileChannel dest) throws IOException {
+        long start = dest.position();
+        long position = start;
+        long n;
+        // 阻塞的源只有在读到结束时才会返回 0
+        while ((n = dest.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+            position += n;
         }
+        dest.position(position);
+        return position - start;
     }
 
-    private static void channelCopy(ReadableByteChannel source, WritableByteChannel dest) throws IOException {
+    /**
+     * 总是经过用户态 buffer 的读写循环
+     *
+     * @return 复制的字节数
+     */
+    public static long channelCopy(ReadableByteChannel source, WritableByteChannel dest) throws IOException {
+        long total = 0;
         // direct buffer 要注意回收
         var buffer = ByteBuffer.allocate(16 * 1024);
         while (source.read(buffer) != -1) {
             buffer.flip();
             // write 不一定全部读完了
-            dest.write(buffer);
+            total += dest.write(buffer);
             // 使用 compact 更高效，但是需要在循环外检查是否读完
             buffer.compact();
         }
 
         buffer.flip();
         while (buffer.hasRemaining()) {
-            dest.write(buffer);
+            total += dest.write(buffer);
         }
+        return total;
     }
 }
@@ -0,0 +1,211 @@
+package com.xioshe.only.java.base.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link ChannelCopy} 复制过程中对每块数据执行的变换，多个 stage 串成一条链，数据只经过一遍
+ * <p>
+ * 每个 stage 处理完一块输入后把结果交给下一级，最后一级写入目标 channel。
+ * 输出 buffer 由 stage 自己持有并反复使用，下一级必须在 accept 返回前处理完，复制过程中不分配 buffer。
+ * 一个 stage 实例只能用于一次复制。
+ *
+ * @author xioshe 2026-10-18
+ */
+public interface CopyStage {
+
+    /**
+     * 下一级的输入
+     */
+    @FunctionalInterface
+    interface Sink {
+
+        /**
+         * @param buffer 读模式，返回时其中的数据都已被处理，之后调用方会复用它
+         */
+        void accept(ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * 处理一块数据
+     *
+     * @param in  读模式，返回时应已全部消费
+     * @param out 下一级
+     */
+    void process(ByteBuffer in, Sink out) throws IOException;
+
+    /**
+     * 源读完后调用一次，输出缓存在 stage 内部的剩余数据
+     */
+    default void finish(Sink out) throws IOException {
+    }
+
+    /**
+     * 复制结束后调用一次，无论成功还是失败，释放 stage 占用的本地资源
+     */
+    default void release() {
+    }
+
+    /**
+     * 计算量大的 stage 会让 {@link ChannelCopy} 把变换与写入放到单独的线程，和读取并行
+     */
+    default boolean cpuHeavy() {
+        return false;
+    }
+
+    static Crc32c crc32c() {
+        return new Crc32c();
+    }
+
+    static ByteCount byteCount() {
+        return new ByteCount();
+    }
+
+    /**
+     * zlib 格式压缩
+     *
+     * @param level {@link Deflater} 的压缩级别
+     */
+    static Deflate deflate(int level) {
+        return new Deflate(level);
+    }
+
+    /**
+     * 解压 {@link #deflate(int)} 的输出
+     */
+    static Inflate inflate() {
+        return new Inflate();
+    }
+
+    /**
+     * 计算经过的数据的 CRC32C，数据原样传给下一级
+     */
+    final class Crc32c implements CopyStage {
+        private final CRC32C crc = new CRC32C();
+
+        @Override
+        public void process(ByteBuffer in, Sink out) throws IOException {
+            int position = in.position();
+            crc.update(in);
+            in.position(position);
+            out.accept(in);
+        }
+
+        public long value() {
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * 统计经过的字节数，数据原样传给下一级
+     */
+    final class ByteCount implements CopyStage {
+        private long count;
+
+        @Override
+        public void process(ByteBuffer in, Sink out) throws IOException {
+            count += in.remaining();
+            out.accept(in);
+        }
+
+        public long count() {
+            return count;
+        }
+    }
+
+    final class Deflate implements CopyStage {
+        private static final byte[] EMPTY = new byte[0];
+        private final Deflater deflater;
+        private final ByteBuffer output = ByteBuffer.allocate(64 * 1024);
+
+        Deflate(int level) {
+            this.deflater = new Deflater(level);
+        }
+
+        @Override
+        public void process(ByteBuffer in, Sink out) throws IOException {
+            // deflate 会推进 in 的 position
+            deflater.setInput(in);
+            while (!deflater.needsInput()) {
+                drain(out);
+            }
+            // 不再引用调用方的 buffer，它被清空复用后 finish 不会再压缩其中的旧数据
+            deflater.setInput(EMPTY);
+        }
+
+        @Override
+        public void finish(Sink out) throws IOException {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(out);
+            }
+        }
+
+        @Override
+        public void release() {
+            deflater.end();
+        }
+
+        private void drain(Sink out) throws IOException {
+            output.clear();
+            deflater.deflate(output);
+            output.flip();
+            if (output.hasRemaining()) {
+                out.accept(output);
+            }
+        }
+
+        @Override
+        public boolean cpuHeavy() {
+            return true;
+        }
+    }
+
+    final class Inflate implements CopyStage {
+        private final Inflater inflater = new Inflater();
+        private final ByteBuffer output = ByteBuffer.allocate(64 * 1024);
+
+        @Override
+        public void process(ByteBuffer in, Sink out) throws IOException {
+            inflater.setInput(in);
+            try {
+                while (!inflater.finished() && !inflater.needsInput()) {
+                    output.clear();
+                    int n = inflater.inflate(output);
+                    if (n == 0 && inflater.needsDictionary()) {
+                        throw new IOException("Deflate stream needs a preset dictionary");
+                    }
+                    output.flip();
+                    if (output.hasRemaining()) {
+                        out.accept(output);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+            // 压缩流结束后的多余数据直接丢弃
+            in.position(in.limit());
+        }
+
+        @Override
+        public void finish(Sink out) throws IOException {
+            if (!inflater.finished()) {
+                throw new IOException("Truncated deflate stream");
+            }
+        }
+
+        @Override
+        public void release() {
+            inflater.end();
+        }
+
+        @Override
+        public boolean cpuHeavy() {
+            return true;
+        }
+    }
+}
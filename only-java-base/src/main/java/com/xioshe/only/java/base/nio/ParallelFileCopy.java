@@ -0,0 +1,166 @@
+package com.xioshe.only.java.base.nio;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 把文件切成若干段，在 ForkJoin 线程池中并行复制
+ * <p>
+ * 单线程的 {@link ChannelCopy} 一次只有一个 IO 请求在途，跑不满 NVMe 这类需要深队列的设备。
+ * 这里每段由一个线程独立复制，两种方式都按绝对位置读写，不依赖也不修改 channel 的位置，多个线程共用同一对 channel：
+ * <ul>
+ *     <li>{@link Mode#POSITIONAL}：{@code read(buf, position)} / {@code write(buf, position)}，经过每个线程一块的直接内存</li>
+ *     <li>{@link Mode#MAPPED}：两端各映射一个窗口，内存之间直接复制，窗口由 GC 回收时解除映射</li>
+ * </ul>
+ *
+ * @author xioshe 2026-10-18
+ */
+public class ParallelFileCopy implements AutoCloseable {
+
+    public enum Mode {
+        POSITIONAL, MAPPED
+    }
+
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    /**
+     * POSITIONAL 模式每次读写的 buffer 大小
+     */
+    static final int IO_BUFFER_SIZE = 1024 * 1024;
+    /**
+     * 每个工作线程复用一块，线程池关闭后随线程回收
+     */
+    private static final ThreadLocal<ByteBuffer> IO_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(IO_BUFFER_SIZE));
+
+    private final Mode mode;
+    private final long chunkSize;
+    private final ForkJoinPool pool;
+
+    public ParallelFileCopy(Mode mode) {
+        this(mode, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param chunkSize   每段的字节数，也是 MAPPED 模式的窗口大小，此时不能超过 {@link Integer#MAX_VALUE}
+     * @param parallelism 同时复制的段数
+     */
+    public ParallelFileCopy(Mode mode, long chunkSize, int parallelism) {
+        if (chunkSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("chunkSize and parallelism must be positive");
+        }
+        if (mode == Mode.MAPPED && chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("chunkSize must not exceed Integer.MAX_VALUE in MAPPED mode");
+        }
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 复制整个文件，target 已存在时被覆盖
+     *
+     * @return 复制的字节数
+     */
+    public long copy(Path source, Path target) throws IOException {
+        try (var src = FileChannel.open(source, READ);
+             var dst = FileChannel.open(target, CREATE, READ, WRITE, TRUNCATE_EXISTING)) {
+            long size = src.size();
+            if (size == 0) {
+                return 0;
+            }
+            // 先把目标扩到最终大小，各段写入和映射时不会并发地改变文件长度
+            dst.write(ByteBuffer.allocate(1), size - 1);
+            try {
+                pool.invoke(new CopyTask(mode, chunkSize, src, dst, 0, size));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return size;
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * 对半拆分直到不超过一段。只在线程池中使用，不会被序列化
+     */
+    static final class CopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Mode mode;
+        final long chunkSize;
+        final transient FileChannel src;
+        final transient FileChannel dst;
+        final long from;
+        final long to;
+
+        CopyTask(Mode mode, long chunkSize, FileChannel src, FileChannel dst, long from, long to) {
+            this.mode = mode;
+            this.chunkSize = chunkSize;
+            this.src = src;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            long length = to - from;
+            if (length <= chunkSize) {
+                try {
+                    if (mode == Mode.MAPPED) {
+                        copyMapped(src, dst, from, length);
+                    } else {
+                        copyPositional(src, dst, from, length);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            // 在段边界上拆分，每段都是完整的 chunkSize
+            long chunks = (length + chunkSize - 1) / chunkSize;
+            long mid = from + chunks / 2 * chunkSize;
+            invokeAll(new CopyTask(mode, chunkSize, src, dst, from, mid),
+                    new CopyTask(mode, chunkSize, src, dst, mid, to));
+        }
+    }
+
+    static void copyPositional(FileChannel src, FileChannel dst, long position, long length) throws IOException {
+        ByteBuffer buffer = IO_BUFFER.get();
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            if (end - position < buffer.capacity()) {
+                buffer.limit((int) (end - position));
+            }
+            int n = src.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Source truncated at " + position);
+            }
+            buffer.flip();
+            long at = position;
+            while (buffer.hasRemaining()) {
+                at += dst.write(buffer, at);
+            }
+            position += n;
+        }
+    }
+
+    static void copyMapped(FileChannel src, FileChannel dst, long position, long length) throws IOException {
+        MappedByteBuffer in = src.map(FileChannel.MapMode.READ_ONLY, position, length);
+        MappedByteBuffer out = dst.map(FileChannel.MapMode.READ_WRITE, position, length);
+        out.put(in);
+    }
+}
@@ -0,0 +1,142 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Reactor 私有的堆外 buffer 池，按容量分成几个规格
+ * <p>
+ * 只在所属 Reactor 的线程中借出和归还，所以不需要同步。
+ * handler 只在读写进行中持有 buffer，用完立即归还，内存占用随流量而不是连接数增长。
+ * <p>
+ * 超过最大规格的申请直接分配、用完丢弃，除了 allocated 不计入统计；每个规格缓存的空闲 buffer 有上限，超出的归还也直接丢弃。
+ * 归还时只接受容量正好是某个规格的堆外 buffer，其他的直接忽略，不会弄乱统计。
+ * 统计字段是普通字段，只由所属线程写，借出归还时没有内存屏障；{@link #stats()} 用 opaque 读取，其他线程读到的是近似值。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class BufferPool {
+
+    /**
+     * 规格：1K、4K、16K、64K
+     */
+    static final int[] SIZE_CLASSES = {1024, 4 * 1024, 16 * 1024, 64 * 1024};
+    static final int MAX_POOLED_BYTES_PER_CLASS = 4 * 1024 * 1024;
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<ByteBuffer>[] free = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[SIZE_CLASSES.length];
+
+    private static final VarHandle ACQUIRED;
+    private static final VarHandle RELEASED;
+    private static final VarHandle ALLOCATED;
+    private static final VarHandle IN_USE_BYTES;
+    private static final VarHandle POOLED_BYTES;
+
+    static {
+        try {
+            var lookup = MethodHandles.lookup();
+            ACQUIRED = lookup.findVarHandle(BufferPool.class, "acquired", long.class);
+            RELEASED = lookup.findVarHandle(BufferPool.class, "released", long.class);
+            ALLOCATED = lookup.findVarHandle(BufferPool.class, "allocated", long.class);
+            IN_USE_BYTES = lookup.findVarHandle(BufferPool.class, "inUseBytes", long.class);
+            POOLED_BYTES = lookup.findVarHandle(BufferPool.class, "pooledBytes", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private long acquired;
+    private long released;
+    private long allocated;
+    private long inUseBytes;
+    private long pooledBytes;
+
+    public BufferPool() {
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * 借出一个清空的 buffer，容量不小于 minCapacity
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int index = classOf(minCapacity);
+        if (index < 0) {
+            allocated++;
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+        acquired++;
+        ByteBuffer buffer = free[index].pollFirst();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(SIZE_CLASSES[index]);
+            allocated++;
+        } else {
+            pooledBytes -= buffer.capacity();
+        }
+        inUseBytes += buffer.capacity();
+        return buffer;
+    }
+
+    /**
+     * 归还 buffer，之后调用方不能再使用它
+     */
+    public void release(ByteBuffer buffer) {
+        int index = exactClassOf(buffer.capacity());
+        if (index < 0 || !buffer.isDirect()) {
+            // 超过最大规格或者不是从池中借出的
+            return;
+        }
+        released++;
+        inUseBytes -= buffer.capacity();
+        if ((long) (free[index].size() + 1) * SIZE_CLASSES[index] <= MAX_POOLED_BYTES_PER_CLASS) {
+            buffer.clear();
+            // 后进先出，刚归还的 buffer 更可能还在 CPU 缓存中
+            free[index].addFirst(buffer);
+            pooledBytes += buffer.capacity();
+        }
+    }
+
+    /**
+     * @return 不小于 size 的最小规格，超过最大规格返回 -1
+     */
+    static int classOf(int size) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (size <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int exactClassOf(int capacity) {
+        int index = classOf(capacity);
+        return index >= 0 && SIZE_CLASSES[index] == capacity ? index : -1;
+    }
+
+    /**
+     * 可以在任意线程调用，各字段分别读取，彼此之间不是一致的快照
+     */
+    public Stats stats() {
+        return new Stats((long) ACQUIRED.getOpaque(this), (long) RELEASED.getOpaque(this),
+                (long) ALLOCATED.getOpaque(this), (long) IN_USE_BYTES.getOpaque(this),
+                (long) POOLED_BYTES.getOpaque(this));
+    }
+
+    /**
+     * @param acquired    累计借出规格内 buffer 的次数
+     * @param released    累计归还规格内 buffer 的次数
+     * @param allocated   累计新分配的 buffer 数，包括超过最大规格的，远小于 acquired 说明复用良好
+     * @param inUseBytes  正在被读写使用的字节数
+     * @param pooledBytes 池中空闲的字节数
+     */
+    public record Stats(long acquired, long released, long allocated, long inUseBytes, long pooledBytes) {
+
+        public Stats plus(Stats other) {
+            return new Stats(acquired + other.acquired, released + other.released, allocated + other.allocated,
+                    inUseBytes + other.inUseBytes, pooledBytes + other.pooledBytes);
+        }
+    }
+}
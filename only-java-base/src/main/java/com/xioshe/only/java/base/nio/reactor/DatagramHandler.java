@@ -0,0 +1,191 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+
+/**
+ * UDP 的 handler，与 {@link IoHandler} 一样作为 attachment 注册到 {@link EventLoop} 上
+ * <p>
+ * 一次可读事件最多收 {@link #MAX_DATAGRAMS_PER_READ} 个报文，每个报文交给 {@link #process(ByteBuffer, SocketAddress)}，
+ * 接收 buffer 在整批报文间复用。回复先复制到池化的 buffer 放进发送队列，一批处理完再统一发送；
+ * socket 发送缓冲区满时关注 OP_WRITE，等可写再发，不阻塞循环。
+ * <p>
+ * UDP 没有流控，发送队列满了就丢掉新的回复并计数，报文和丢弃数都记在 {@link ServerMetrics} 中。
+ * 超过接收 buffer 的报文会被内核截断。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class DatagramHandler implements SelectionHandler {
+
+    /**
+     * 一次可读事件最多收的报文数，避免一个端口占满整轮循环
+     */
+    static final int MAX_DATAGRAMS_PER_READ = 64;
+    /**
+     * 覆盖以太网 MTU 下的报文，更大的请求在 IP 层分片，容易丢
+     */
+    static final int DEFAULT_MAX_DATAGRAM_SIZE = 4 * 1024;
+    static final int DEFAULT_MAX_PENDING_REPLIES = 1024;
+
+    final DatagramChannel dc;
+    final ServerMetrics metrics;
+    final int maxDatagramSize;
+    final int maxPendingReplies;
+    /**
+     * 所属循环持有的延迟记录器，只在循环线程中记录
+     */
+    ServerMetrics.Recorder recorder;
+    SelectionKey sk;
+    BufferPool pool;
+    /**
+     * 待发送的回复，只被循环线程访问
+     */
+    final ArrayDeque<Reply> outbound = new ArrayDeque<>();
+
+    public DatagramHandler(DatagramChannel dc, ServerMetrics metrics) {
+        this(dc, metrics, DEFAULT_MAX_DATAGRAM_SIZE, DEFAULT_MAX_PENDING_REPLIES);
+    }
+
+    /**
+     * @param maxDatagramSize   接收 buffer 的大小
+     * @param maxPendingReplies 发送队列的长度上限，超出的回复被丢弃
+     */
+    public DatagramHandler(DatagramChannel dc, ServerMetrics metrics, int maxDatagramSize, int maxPendingReplies) {
+        this.dc = dc;
+        this.metrics = metrics;
+        this.maxDatagramSize = maxDatagramSize;
+        this.maxPendingReplies = maxPendingReplies;
+    }
+
+    /**
+     * 只能在所属 Reactor 的线程中调用
+     */
+    void register(EventLoop loop) throws IOException {
+        this.pool = loop.bufferPool;
+        this.recorder = loop.recorder(metrics);
+        dc.configureBlocking(false);
+        sk = dc.register(loop.selector, SelectionKey.OP_READ, this);
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (sk.isValid() && sk.isWritable()) {
+                flush();
+            }
+            if (sk.isValid() && sk.isReadable()) {
+                read();
+            }
+        } catch (IOException e) {
+            metrics.error();
+            close();
+        }
+    }
+
+    void read() throws IOException {
+        ByteBuffer buffer = pool.acquire(maxDatagramSize);
+        try {
+            for (int i = 0; i < MAX_DATAGRAMS_PER_READ; i++) {
+                SocketAddress from = dc.receive(buffer);
+                if (from == null) {
+                    break;
+                }
+                buffer.flip();
+                metrics.datagramIn(buffer.remaining());
+                long start = System.nanoTime();
+                process(buffer, from);
+                recorder.message(System.nanoTime() - start);
+                buffer.clear();
+            }
+        } finally {
+            pool.release(buffer);
+        }
+        flush();
+    }
+
+    /**
+     * 业务处理，默认原样返回
+     *
+     * @param datagram 只在本次调用期间有效，下一个报文会覆盖它
+     * @param from     发送方地址
+     */
+    void process(ByteBuffer datagram, SocketAddress from) {
+        reply(datagram, from);
+    }
+
+    /**
+     * 把回复复制到发送队列，队列满时丢弃
+     */
+    void reply(ByteBuffer src, SocketAddress to) {
+        if (outbound.size() >= maxPendingReplies) {
+            metrics.datagramDropped();
+            return;
+        }
+        ByteBuffer copy = pool.acquire(src.remaining());
+        copy.put(src).flip();
+        outbound.addLast(new Reply(copy, to));
+    }
+
+    void flush() throws IOException {
+        for (Reply reply; (reply = outbound.peekFirst()) != null; ) {
+            int size = reply.buffer.remaining();
+            try {
+                if (dc.send(reply.buffer, reply.to) == 0 && size > 0) {
+                    // 发送缓冲区满，报文要么整个发出要么不发，等可写后重发
+                    sk.interestOpsOr(SelectionKey.OP_WRITE);
+                    return;
+                }
+                metrics.datagramOut(size);
+            } catch (IOException e) {
+                if (!dc.isOpen()) {
+                    throw e;
+                }
+                // 对方不可达等错误只影响这一个报文
+                metrics.datagramDropped();
+            }
+            outbound.pollFirst();
+            pool.release(reply.buffer);
+        }
+        if ((sk.interestOps() & SelectionKey.OP_WRITE) != 0) {
+            sk.interestOpsAnd(~SelectionKey.OP_WRITE);
+        }
+    }
+
+    @Override
+    public void onDispatchFailure() {
+        metrics.error();
+        close();
+    }
+
+    void close() {
+        if (!dc.isOpen()) {
+            return;
+        }
+        if (sk != null) {
+            sk.cancel();
+        }
+        try {
+            dc.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Reply reply; (reply = outbound.pollFirst()) != null; ) {
+            metrics.datagramDropped();
+            pool.release(reply.buffer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + dc.socket().getLocalSocketAddress();
+    }
+
+    record Reply(ByteBuffer buffer, SocketAddress to) {
+    }
+}
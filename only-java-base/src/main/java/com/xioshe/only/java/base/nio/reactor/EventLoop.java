@@ -0,0 +1,422 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.metrics.LoopMetrics;
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 单线程事件循环，{@link Reactor} 与 {@link MultiThreadReactor} 的每个 SubReactor 都是一个 EventLoop
+ * <p>
+ * 每轮循环先按 {@link WaitStrategy} 等待 IO 事件，再分发就绪的 key，最后执行到期的定时任务和其他线程提交的任务。
+ * selector、buffer 池和定时任务队列只被循环线程访问；其他线程通过 {@link #execute(Runnable)} 提交任务，
+ * 只有循环线程正在等待时才唤醒它，连续提交只唤醒一次。
+ * <p>
+ * 默认把 selector 的 selectedKeys 换成 {@link SelectedKeySet}，按下标遍历就绪的 key，替换失败时退回迭代器。
+ * <p>
+ * 每轮循环的等待时间、处理时间、就绪 key 数、任务数以及每次分发的耗时记录在 {@link LoopMetrics} 中，
+ * 相邻的分发共用一次 {@link System#nanoTime()}，每个 key 只多一次计时。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class EventLoop implements Runnable, PlacementStrategy.Load {
+
+    /**
+     * 一轮循环最多执行的任务数，任务提交过快时也要留时间处理 IO
+     */
+    static final int MAX_TASKS_PER_LOOP = 1024;
+    /**
+     * 时间轮每格 100ms，512 格转一圈约 51 秒
+     */
+    static final long TIMER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final int TIMER_WHEEL_SIZE = 512;
+
+    final Selector selector;
+    /**
+     * 为 null 时使用 JDK 自带的 selectedKeys
+     */
+    final SelectedKeySet selectedKeys;
+    final BufferPool bufferPool = new BufferPool();
+    final WaitStrategy waitStrategy;
+    /**
+     * 多生产者单消费者的任务队列，只由循环线程消费
+     */
+    final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    /**
+     * 队列中的任务数，提交时加一，循环线程每轮执行完一次性减去；ConcurrentLinkedQueue.size() 要遍历整个队列
+     */
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final BooleanSupplier hasTasks = () -> !tasks.isEmpty();
+    /**
+     * 循环线程不在等待中时为 true，此时提交任务不需要唤醒
+     */
+    final AtomicBoolean awake = new AtomicBoolean(true);
+    /**
+     * 按到期时间排序的定时任务，只被循环线程访问
+     */
+    private final PriorityQueue<ScheduledTask> scheduled = new PriorityQueue<>();
+    private long scheduledSeq = 0;
+    /**
+     * 连接空闲超时用的时间轮，只被循环线程访问
+     */
+    final HashedWheelTimer timer = new HashedWheelTimer(TIMER_TICK_NANOS, TIMER_WHEEL_SIZE, System.nanoTime());
+    /**
+     * handler 解码时暂存帧的列表，同一时刻只有一个 handler 在用，所有连接共用
+     */
+    final ArrayList<ByteBuffer> frames = new ArrayList<>();
+    volatile Thread thread;
+    /**
+     * close() 置为 true，循环线程在本轮结束后退出并关闭 selector
+     */
+    private volatile boolean closing;
+    /**
+     * 提交注册时加一，连接关闭时减一
+     */
+    final AtomicInteger connections = new AtomicInteger(0);
+    /**
+     * 每轮循环处理事件与任务耗时的指数移动平均，只由循环线程写
+     */
+    volatile long loopLatencyNanos;
+    /**
+     * 循环线程开始等待的时刻，没在等待时为 0。等待期间 {@link #loopLatencyNanos()} 按等待时长衰减
+     */
+    private volatile long waitingSince;
+    /**
+     * 空闲等待时 loopLatencyNanos 的半衰期
+     */
+    static final long LATENCY_HALF_LIFE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    final LoopMetrics metrics = new LoopMetrics();
+    /**
+     * 每个服务的 ServerMetrics 对应一个单写者的延迟记录器，只被循环线程访问
+     */
+    private final Map<ServerMetrics, ServerMetrics.Recorder> recorders = new IdentityHashMap<>();
+
+    public EventLoop() throws IOException {
+        this(WaitStrategy.blocking());
+    }
+
+    public EventLoop(WaitStrategy waitStrategy) throws IOException {
+        this(waitStrategy, true);
+    }
+
+    /**
+     * @param optimizeSelectedKeys 是否替换 selector 的 selectedKeys
+     */
+    public EventLoop(WaitStrategy waitStrategy, boolean optimizeSelectedKeys) throws IOException {
+        this.selector = Selector.open();
+        this.selectedKeys = optimizeSelectedKeys ? SelectedKeySet.install(selector) : null;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * 只能在循环线程中调用，返回的记录器也只能在循环线程中使用
+     */
+    ServerMetrics.Recorder recorder(ServerMetrics serverMetrics) {
+        return recorders.computeIfAbsent(serverMetrics, ServerMetrics::newRecorder);
+    }
+
+    public Selector getSelector() {
+        return selector;
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        System.out.println("Reactor start in thread-" + Thread.currentThread().threadId());
+        try {
+            while (!closing && !Thread.currentThread().isInterrupted()) {
+                // 先声明要等待，再检查队列：之后提交的任务一定能看到 awake 为 false 并唤醒
+                awake.set(false);
+                long waitStart = System.nanoTime();
+                if (tasks.isEmpty()) {
+                    waitingSince = waitStart;
+                    waitStrategy.await(selector, nextDeadline(), hasTasks);
+                    waitingSince = 0;
+                    // 空闲期间的衰减计入平均值，醒来后不会回到空闲前的负载
+                    loopLatencyNanos = decay(loopLatencyNanos, System.nanoTime() - waitStart);
+                } else {
+                    selector.selectNow();
+                }
+                awake.set(true);
+                long start = System.nanoTime();
+                if (selectedKeys != null) {
+                    metrics.selected(start - waitStart, selectedKeys.size);
+                    processSelectedKeysOptimized(start);
+                } else {
+                    metrics.selected(start - waitStart, selector.selectedKeys().size());
+                    processSelectedKeys(start);
+                }
+                runScheduledTasks();
+                if (timer.size() > 0) {
+                    timer.advance(System.nanoTime());
+                }
+                int queued = pendingTasks.get();
+                int ran = runTasks();
+                pendingTasks.addAndGet(-ran);
+                long busy = System.nanoTime() - start;
+                metrics.loopCompleted(busy, queued, ran == MAX_TASKS_PER_LOOP && !tasks.isEmpty());
+                // 权重 1/8，几十轮之前的负载基本不再影响结果
+                loopLatencyNanos += (busy - loopLatencyNanos) >> 3;
+            }
+        } catch (ClosedSelectorException e) {
+            // 循环开始前 selector 就被 close() 关闭了，正常退出
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            // 由循环线程关闭 selector，不会和正在分发的 handler 并发
+            closeSelector();
+        }
+    }
+
+    private void closeSelector() {
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param start 上一次分发的结束时刻就是下一次的开始时刻
+     */
+    private void processSelectedKeys(long start) {
+        Set<SelectionKey> selected = selector.selectedKeys();
+        Iterator<SelectionKey> it = selected.iterator();
+        while (it.hasNext()) {
+            SelectionKey sk = it.next();
+            dispatch(sk);
+            it.remove();
+            long now = System.nanoTime();
+            metrics.dispatched(sk.attachment(), now - start);
+            start = now;
+        }
+    }
+
+    private void processSelectedKeysOptimized(long start) {
+        SelectionKey[] keys = selectedKeys.keys;
+        for (int i = 0; i < selectedKeys.size; i++) {
+            SelectionKey sk = keys[i];
+            // 尽早置空，已关闭连接的 key 可以被回收
+            keys[i] = null;
+            dispatch(sk);
+            long now = System.nanoTime();
+            metrics.dispatched(sk.attachment(), now - start);
+            start = now;
+        }
+        selectedKeys.size = 0;
+    }
+
+    void dispatch(SelectionKey k) {
+        if (!k.isValid()) {
+            // 同一轮中前面的 handler 可能已经关闭了这个连接
+            return;
+        }
+        Runnable r = (Runnable) (k.attachment()); // 拿到通道注册时附加的对象
+        if (r == null) {
+            return;
+        }
+        try {
+            r.run();
+        } catch (RuntimeException e) {
+            // 一个 handler 失败不影响事件循环继续运行，连接可能处于不一致的状态，直接关闭
+            e.printStackTrace();
+            if (r instanceof SelectionHandler handler) {
+                handler.onDispatchFailure();
+            }
+        }
+    }
+
+    /**
+     * @return 执行的任务数
+     */
+    private int runTasks() {
+        for (int i = 0; i < MAX_TASKS_PER_LOOP; i++) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                return i;
+            }
+            safeRun(task);
+        }
+        return MAX_TASKS_PER_LOOP;
+    }
+
+    private void runScheduledTasks() {
+        long now = System.nanoTime();
+        ScheduledTask head;
+        while ((head = scheduled.peek()) != null && head.deadline - now <= 0) {
+            scheduled.poll();
+            if (!head.cancelled) {
+                safeRun(head.task);
+            }
+        }
+    }
+
+    private long nextDeadline() {
+        ScheduledTask head;
+        while ((head = scheduled.peek()) != null && head.cancelled) {
+            scheduled.poll();
+        }
+        long deadline = head == null ? Long.MAX_VALUE : head.deadline;
+        return Math.min(deadline, timer.nextTickNanos());
+    }
+
+    private static void safeRun(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            // 一个任务失败不影响事件循环继续运行
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int connections() {
+        return connections.get();
+    }
+
+    @Override
+    /**
+     * @return 每轮循环耗时的平滑值；循环阻塞在等待中时按已等待的时长衰减，空闲的循环不会一直显得繁忙
+     */
+    public long loopLatencyNanos() {
+        long latency = loopLatencyNanos;
+        long since = waitingSince;
+        return since == 0 ? latency : decay(latency, System.nanoTime() - since);
+    }
+
+    /**
+     * 每过一个半衰期减半
+     */
+    static long decay(long latency, long idleNanos) {
+        long halves = idleNanos / LATENCY_HALF_LIFE_NANOS;
+        return halves >= 63 ? 0 : latency >> halves;
+    }
+
+    public LoopMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * 提交任务，在循环线程的下一轮循环中执行，可以在任意线程调用
+     * <br/>只有循环线程正在等待时才唤醒，连续提交只唤醒一次
+     *
+     * @param task 不应阻塞，否则会拖慢该循环上所有连接
+     */
+    public void execute(Runnable task) {
+        offer(task);
+        if (!inEventLoop() && awake.compareAndSet(false, true)) {
+            waitStrategy.wakeup(selector, thread);
+        }
+    }
+
+    private void offer(Runnable task) {
+        // 先加计数再入队，循环线程减去执行数后计数不会为负
+        pendingTasks.incrementAndGet();
+        tasks.offer(task);
+    }
+
+    /**
+     * 在 delay 之后于循环线程中执行任务，可以在任意线程调用
+     *
+     * @return 可以用来取消任务
+     */
+    public ScheduledTask schedule(Runnable task, long delay, TimeUnit unit) {
+        var scheduledTask = new ScheduledTask(System.nanoTime() + unit.toNanos(delay), task);
+        if (inEventLoop()) {
+            addScheduled(scheduledTask);
+        } else {
+            execute(() -> addScheduled(scheduledTask));
+        }
+        return scheduledTask;
+    }
+
+    private void addScheduled(ScheduledTask task) {
+        task.seq = scheduledSeq++;
+        scheduled.add(task);
+    }
+
+    /**
+     * 向循环中注册 IoHandler，可以在任意线程调用
+     * <br/>注册在循环线程中进行，调用线程不会因为 select() 持有 selector 的锁而阻塞
+     *
+     * @param handler {@link IoHandler}
+     */
+    public void register(IoHandler handler) {
+        connections.incrementAndGet();
+        handler.closeListener = connections::decrementAndGet;
+        execute(() -> {
+            try {
+                handler.register(this);
+            } catch (IOException e) {
+                handler.metrics.error();
+                handler.close();
+            }
+        });
+    }
+
+    /**
+     * 让循环线程在本轮结束后退出并关闭 selector，已注册的连接不会被关闭
+     * <br/>循环还没运行时直接关闭 selector
+     */
+    public void close() throws IOException {
+        closing = true;
+        Thread t = thread;
+        if (t == null) {
+            selector.close();
+            return;
+        }
+        // 空任务让自旋的等待方式也能返回
+        offer(() -> {
+        });
+        waitStrategy.wakeup(selector, t);
+    }
+
+    /**
+     * 定时任务，到期时间相同的按提交顺序执行
+     */
+    public static final class ScheduledTask implements Comparable<ScheduledTask> {
+        final long deadline;
+        final Runnable task;
+        long seq;
+        volatile boolean cancelled;
+
+        ScheduledTask(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * 取消任务，已经开始执行的不受影响
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            // nanoTime 可能溢出，比较差值而不是直接比较
+            int c = Long.signum(deadline - other.deadline);
+            return c != 0 ? c : Long.compare(seq, other.seq);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * 把目录下的文件发给客户端，每行一个请求
+ * <pre>
+ * GET name -> +length\n 后面跟文件内容，或者 -ERR message\n
+ * </pre>
+ * 文件内容用 {@link FileChannel#transferTo} 直接从页缓存写入 socket（Linux 上是 sendfile），不经过堆内存。
+ * socket 写满时 transferTo 返回 0，关注 OP_WRITE 等下次可写再从断点继续；
+ * 每次可写事件最多发送 {@link #MAX_BYTES_PER_EVENT}，一个大文件不会独占循环，同一线程上的下载轮流推进。
+ * <p>
+ * 流水线上的请求按顺序排队，前一个文件发完才写下一个回复头。文件在开始发送时才打开，同时只占用一个文件描述符。
+ * 排队的响应超过 {@link #MAX_PENDING_RESPONSES} 时暂停读，发出一半后再恢复，客户端不读回复时不会无限堆积请求。
+ *
+ * @author xioshe 2026-10-18
+ */
+class FileServerHandler extends IoHandler {
+
+    static final long MAX_BYTES_PER_EVENT = 1024 * 1024;
+    static final int MAX_PENDING_RESPONSES = 64;
+
+    /**
+     * 已经 toRealPath，请求的文件解析后必须仍在其下
+     */
+    final Path root;
+    private final ArrayDeque<Response> responses = new ArrayDeque<>();
+    /**
+     * 正在发送的文件，只在队首的响应发送文件内容期间打开
+     */
+    private FileChannel file;
+
+    FileServerHandler(SocketChannel sc, ServerMetrics metrics, Path root) {
+        super(sc, metrics);
+        this.root = root;
+    }
+
+    @Override
+    void process(List<ByteBuffer> frames) {
+        for (ByteBuffer frame : frames) {
+            String[] args = StandardCharsets.UTF_8.decode(frame).toString().strip().split(" +");
+            if (args.length != 2 || !"GET".equalsIgnoreCase(args[0])) {
+                responses.addLast(error("usage: GET name"));
+                continue;
+            }
+            responses.addLast(resolve(args[1]));
+        }
+        if (responses.size() > MAX_PENDING_RESPONSES) {
+            pauseRead();
+        }
+    }
+
+    @Override
+    boolean readResumable() {
+        return super.readResumable() && responses.size() <= MAX_PENDING_RESPONSES / 2;
+    }
+
+    private Response resolve(String name) {
+        try {
+            // 去掉开头的 /，否则会被当成绝对路径；含 NUL 等非法字符时抛 InvalidPathException
+            Path path = root.resolve(name.replaceFirst("^/+", "")).normalize();
+            // 符号链接解析后也不能跳出根目录
+            if (path.startsWith(root) && Files.isRegularFile(path)) {
+                Path real = path.toRealPath();
+                if (real.startsWith(root)) {
+                    long size = Files.size(real);
+                    return new Response(header("+" + size), real, size);
+                }
+            }
+        } catch (IOException | InvalidPathException e) {
+            // 按不存在处理
+        }
+        return error("not found: " + name);
+    }
+
+    private static Response error(String message) {
+        return new Response(header("-ERR " + message), null, 0);
+    }
+
+    private static ByteBuffer header(String line) {
+        return ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 先写出队首响应的回复头，再发送文件内容，发完换下一个响应
+     */
+    @Override
+    void flush() throws IOException {
+        long budget = MAX_BYTES_PER_EVENT;
+        while (true) {
+            Response head = responses.peekFirst();
+            if (head != null && head.header != null) {
+                write(head.header);
+                head.header = null;
+            }
+            super.flush();
+            if (!outbound.isEmpty() || head == null) {
+                // 回复头还没写完，super.flush() 已经关注了 OP_WRITE
+                return;
+            }
+            if (head.path != null) {
+                if (file == null) {
+                    file = FileChannel.open(head.path);
+                    head.end = Math.min(head.end, file.size());
+                }
+                while (head.position < head.end && budget > 0) {
+                    long n = file.transferTo(head.position, Math.min(head.end - head.position, budget), sc);
+                    if (n == 0) {
+                        break;
+                    }
+                    head.position += n;
+                    budget -= n;
+                    metrics.bytesOut(n);
+                    writeAt = System.nanoTime();
+                }
+                if (head.position < head.end) {
+                    // socket 写满或者用完了本次的额度
+                    sk.interestOpsOr(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (head.end < head.length) {
+                    throw new IOException("File truncated while sending: " + head.path);
+                }
+                file.close();
+                file = null;
+            }
+            responses.pollFirst();
+            resumeReadIfPossible();
+        }
+    }
+
+    @Override
+    void close() {
+        super.close();
+        responses.clear();
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            file = null;
+        }
+    }
+
+    /**
+     * 一个请求的回复头和要发送的文件区间
+     */
+    static final class Response {
+        /**
+         * 写入发送队列后置为 null
+         */
+        ByteBuffer header;
+        final Path path;
+        final long length;
+        long position;
+        long end;
+
+        /**
+         * @param path   为 null 时只有回复头
+         * @param length 回复头中声明的长度
+         */
+        Response(ByteBuffer header, Path path, long length) {
+            this.header = header;
+            this.path = path;
+            this.length = length;
+            this.end = length;
+        }
+    }
+}
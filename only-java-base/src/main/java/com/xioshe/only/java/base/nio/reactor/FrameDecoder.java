@@ -0,0 +1,79 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 把字节流切分成帧，位于 read() 与 process() 之间
+ * <p>
+ * 解出的帧是接收 buffer 的 slice，不复制数据，只在本次 process() 调用期间有效。
+ * 不完整的帧留在接收 buffer 中，下次读到更多数据后再解。
+ * 每个连接一个实例，实现可以保存解码进度。
+ *
+ * @author xioshe 2026-10-18
+ */
+public interface FrameDecoder {
+
+    /**
+     * 解出 in 中所有完整的帧
+     *
+     * @param in     读模式，position 之后是未解码的数据。方法返回时 position 停在第一个不完整帧的开头
+     * @param frames 解出的帧依次追加到这里
+     * @throws IOException 帧超过长度上限或格式错误，连接会被关闭
+     */
+    void decode(ByteBuffer in, List<ByteBuffer> frames) throws IOException;
+
+    /**
+     * 按 '\n' 切分，帧中包含结尾的换行符
+     *
+     * @param maxLength 一行的最大字节数，包括换行符
+     */
+    static FrameDecoder lines(int maxLength) {
+        return new FrameDecoder() {
+            /**
+             * 已经查找过换行符的长度，数据不完整时下次从这里继续找
+             */
+            int scanned = 0;
+
+            @Override
+            public void decode(ByteBuffer in, List<ByteBuffer> frames) throws IOException {
+                int start = in.position();
+                int limit = in.limit();
+                for (int i = start + scanned; i < limit; i++) {
+                    if (in.get(i) == '\n') {
+                        frames.add(in.slice(start, i + 1 - start));
+                        start = i + 1;
+                    } else if (i + 1 - start >= maxLength) {
+                        throw new IOException("Line exceeds " + maxLength + " bytes");
+                    }
+                }
+                in.position(start);
+                scanned = limit - start;
+            }
+        };
+    }
+
+    /**
+     * 4 字节大端长度字段加内容，长度不含长度字段本身，帧中包含长度字段
+     *
+     * @param maxLength 内容的最大字节数
+     */
+    static FrameDecoder lengthPrefixed(int maxLength) {
+        return (in, frames) -> {
+            while (in.remaining() >= Integer.BYTES) {
+                int start = in.position();
+                int length = in.getInt(start);
+                if (length < 0 || length > maxLength) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                int frameLength = Integer.BYTES + length;
+                if (in.remaining() < frameLength) {
+                    return;
+                }
+                frames.add(in.slice(start, frameLength));
+                in.position(start + frameLength);
+            }
+        };
+    }
+}
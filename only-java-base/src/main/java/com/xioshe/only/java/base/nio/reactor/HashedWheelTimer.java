@@ -0,0 +1,145 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+/**
+ * 由事件循环驱动的哈希时间轮，只在循环线程中使用，不需要同步
+ * <p>
+ * 时间被切成固定长度的 tick，轮子有 2 的幂个槽，到期时间落在第 n 个 tick 的定时器挂在 {@code n & mask} 槽的链表上，
+ * 超过一圈的记下剩余圈数。添加、取消都是 O(1)，每个 tick 只遍历一个槽。
+ * <p>
+ * 定时器节点 {@link Timeout} 由调用方持有并反复使用，链表指针就在节点里，调度时不分配对象。
+ * 精度是一个 tick，适合空闲超时这类不要求准时的场景。
+ *
+ * @author xioshe 2026-10-18
+ */
+final class HashedWheelTimer {
+
+    private final long tickNanos;
+    private final Timeout[] wheel;
+    private final int mask;
+    /**
+     * 下一个要处理的 tick 序号，从 startNanos 开始计
+     */
+    private long tick;
+    private final long startNanos;
+    private int size;
+
+    /**
+     * @param tickNanos  每个 tick 的长度
+     * @param wheelSize  槽数，向上取整到 2 的幂
+     * @param startNanos 起始时刻，{@link System#nanoTime()} 时间
+     */
+    HashedWheelTimer(long tickNanos, int wheelSize, long startNanos) {
+        this.tickNanos = tickNanos;
+        int n = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Timeout[n];
+        this.mask = n - 1;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * 在 delayNanos 之后触发，节点已在轮中时先取消再重新调度
+     */
+    void schedule(Timeout timeout, long delayNanos, long nowNanos) {
+        if (timeout.scheduled) {
+            unlink(timeout);
+        }
+        if (size == 0) {
+            // 空轮子没有推进 tick，先追上当前时间，免得之后逐个处理空 tick
+            tick = Math.max(tick, (nowNanos - startNanos) / tickNanos);
+        }
+        // 向上取整到 tick，保证不会提前触发
+        long deadlineTick = (nowNanos - startNanos + Math.max(0, delayNanos) + tickNanos - 1) / tickNanos;
+        deadlineTick = Math.max(deadlineTick, tick);
+        timeout.rounds = (deadlineTick - tick) / wheel.length;
+        int slot = (int) (deadlineTick & mask);
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = wheel[slot];
+        if (wheel[slot] != null) {
+            wheel[slot].prev = timeout;
+        }
+        wheel[slot] = timeout;
+        timeout.scheduled = true;
+        size++;
+    }
+
+    void cancel(Timeout timeout) {
+        if (timeout.scheduled) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * 处理到 nowNanos 为止的所有 tick，触发到期的定时器
+     */
+    void advance(long nowNanos) {
+        long target = (nowNanos - startNanos) / tickNanos;
+        while (tick <= target && size > 0) {
+            // 先推进 tick，expire 中重新调度时按下一个 tick 计算圈数，正好一圈的不会被多算一圈
+            int slot = (int) (tick & mask);
+            tick++;
+            expireSlot(slot);
+        }
+        if (size == 0 && tick <= target) {
+            // 轮子是空的，直接跳到当前 tick
+            tick = target + 1;
+        }
+    }
+
+    private void expireSlot(int slot) {
+        Timeout timeout = wheel[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                unlink(timeout);
+                // expire 中可以重新调度自己，会挂到其他槽或者本槽的表头，不影响 next
+                timeout.expire();
+            }
+            timeout = next;
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheel[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+        size--;
+    }
+
+    /**
+     * @return 下一个 tick 的时刻，轮中没有定时器时为 {@link Long#MAX_VALUE}
+     */
+    long nextTickNanos() {
+        return size == 0 ? Long.MAX_VALUE : startNanos + tick * tickNanos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 定时器节点，可以反复调度
+     */
+    abstract static class Timeout {
+        Timeout prev;
+        Timeout next;
+        int slot;
+        long rounds;
+        boolean scheduled;
+
+        /**
+         * 在循环线程中回调，回调中只能调度或取消当前节点
+         */
+        abstract void expire();
+    }
+}
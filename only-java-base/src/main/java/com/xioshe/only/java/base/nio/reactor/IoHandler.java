@@ -1,86 +1,460 @@
 package com.xioshe.only.java.base.nio.reactor;
 
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
 
 /**
  * 处理 IO 事件的 handler
+ * <p>
+ * 待发送的数据放在每个连接自己的发送队列里。写的时候只写 socket 当前能接受的部分，
+ * 写不完就保持 OP_WRITE，等下次可写再继续，不会在 Reactor 线程里忙等一个慢客户端。
+ * 队列中的多个 buffer 通过 gathering write 一次系统调用写出。
+ * <p>
+ * 读写用的 buffer 都从所属 Reactor 的 {@link BufferPool} 借出，读完或写完立即归还，空闲连接不占用 buffer。
+ * <p>
+ * 设置了 {@link FrameDecoder} 时，每次读到的数据先切成帧，一次读到的所有帧作为一批交给 process()；
+ * 帧是接收 buffer 的 slice，不完整的帧保留在接收 buffer 中，直到读齐。没有 decoder 时每次读到的数据就是一帧。
+ * <p>
+ * 待发送的字节数超过高水位时取消 OP_READ，不再读入新请求；写到低水位以下再恢复。
+ * 读得快、收得慢的客户端因此只能占用有限的内存。
+ * <p>
+ * 配置了空闲超时的连接在所属 {@link EventLoop} 的时间轮上挂一个节点。读写时只记录时刻，不操作时间轮；
+ * 节点到期时再检查实际空闲时长，没超时就按剩余时间重新挂上，超时则关闭连接。
  *
  * @author xioshe 2022-04-29
  */
-public class IoHandler implements Runnable {
+public class IoHandler implements SelectionHandler {
 
-    static int READING = 0, SENDING = 1;
+    /**
+     * 发送队列中 buffer 的最小规格，小消息会合并写进队尾的 buffer
+     */
+    static final int CHUNK_SIZE = 1024;
+    /**
+     * 发送队列中 buffer 的最大规格，更大的消息拆成多个 buffer
+     */
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+    static final int READ_BUFFER_SIZE = 16 * 1024;
+    /**
+     * 一次 gathering write 最多写出的 buffer 数
+     */
+    static final int MAX_GATHER = 16;
 
     final SocketChannel sc;
+    final ServerMetrics metrics;
+    /**
+     * 所属循环持有的延迟记录器，只在循环线程中记录
+     */
+    ServerMetrics.Recorder recorder;
     SelectionKey sk;
-    int mode;
-    ByteBuffer input;
-    ByteBuffer output;
+    EventLoop loop;
+    BufferPool pool;
+    /**
+     * 发送队列，队头正在写，队尾可以追加
+     */
+    final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    /**
+     * 最近一次读到数据的时刻，用于统计处理延迟和读空闲
+     */
+    long readAt;
+    /**
+     * 本轮读取是否解出过帧，只读到半帧时 {@link #readComplete()} 不记录消息
+     */
+    boolean framesRead;
+    /**
+     * 最近一次写出数据的时刻，用于写空闲
+     */
+    long writeAt;
+    /**
+     * 读空闲、写空闲、读写都空闲的超时纳秒数，0 表示不检查
+     */
+    long readIdleNanos;
+    long writeIdleNanos;
+    long allIdleNanos;
+    private IdleTimeout idleTimeout;
+    /**
+     * 发送队列中待写出的字节数
+     */
+    long pendingBytes;
+    /**
+     * 待发送字节数的高低水位，高水位为 0 表示不限制
+     */
+    long highWatermark;
+    long lowWatermark;
+    boolean readPaused;
+    /**
+     * 为 null 时不分帧
+     */
+    FrameDecoder decoder;
+    /**
+     * 上次读完后剩下的不完整帧，处于写模式，可以继续读入
+     */
+    private ByteBuffer cumulation;
+    /**
+     * 连接关闭时回调，Reactor 用它维护自己的连接数
+     */
+    Runnable closeListener;
 
     public IoHandler(SocketChannel sc) {
+        this(sc, new ServerMetrics());
+    }
+
+    public IoHandler(SocketChannel sc, ServerMetrics metrics) {
         this.sc = sc;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 设置发送队列的高低水位，需要在注册之前调用
+     *
+     * @param low  暂停后写到不超过这个值时恢复读取
+     * @param high 超过这个值时暂停读取，0 表示不限制
+     */
+    void writeWatermarks(long low, long high) {
+        this.lowWatermark = low;
+        this.highWatermark = high;
     }
 
-    public void register(Selector selector) throws IOException {
-        input = ByteBuffer.allocate(1024);
-        output = ByteBuffer.allocate(1024);
-        mode = READING;
+    /**
+     * 设置空闲超时，需要在注册之前调用
+     *
+     * @param readIdleNanos  多久没读到数据就关闭连接，0 表示不检查，下同
+     * @param writeIdleNanos 多久没写出数据
+     * @param allIdleNanos   多久既没读到也没写出
+     */
+    void idleTimeouts(long readIdleNanos, long writeIdleNanos, long allIdleNanos) {
+        this.readIdleNanos = readIdleNanos;
+        this.writeIdleNanos = writeIdleNanos;
+        this.allIdleNanos = allIdleNanos;
+    }
+
+    /**
+     * 只能在所属 Reactor 的线程中调用，否则会和阻塞中的 select() 争抢 selector 的锁
+     * <br/>使用该循环的 buffer 池，并在它的时间轮上开始空闲检查
+     *
+     * @param loop 所属的事件循环
+     */
+    void register(EventLoop loop) throws IOException {
+        this.loop = loop;
+        this.pool = loop.bufferPool;
+        this.recorder = loop.recorder(metrics);
 
         // 注册 SocketChannel
         sc.configureBlocking(false);
-        sk = sc.register(selector, 0);
-        sk.interestOps(SelectionKey.OP_READ);
-        sk.attach(this);
-        // 注册了新事件，唤醒一下 selector.select()
-        selector.wakeup();
+        sk = sc.register(loop.selector, SelectionKey.OP_READ, this);
+
+        long now = System.nanoTime();
+        readAt = now;
+        writeAt = now;
+        long first = minPositive(minPositive(readIdleNanos, writeIdleNanos), allIdleNanos);
+        if (first > 0) {
+            idleTimeout = new IdleTimeout();
+            loop.timer.schedule(idleTimeout, first, now);
+        }
+    }
+
+    private static long minPositive(long a, long b) {
+        if (a <= 0) {
+            return b;
+        }
+        return b <= 0 ? a : Math.min(a, b);
     }
 
     @Override
     public void run() {
         try {
-            if (mode == READING) {
+            // 先写后读，先把积压的数据发出去
+            if (sk.isValid() && sk.isWritable()) {
+                flush();
+            }
+            if (sk.isValid() && sk.isReadable() && !readPaused) {
                 read();
-            } else if (mode == SENDING) {
-                send();
             }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            // 只关闭这一个连接，不影响 Reactor 上的其他连接
+            metrics.error();
+            close();
         }
     }
 
+    /**
+     * 读出 socket 中所有可读的数据，每读一次就把解出的帧交给 {@link #onFrames(List)}，最后调用 {@link #readComplete()}
+     */
     void read() throws IOException {
-        while (sc.read(input) > 0) {
-            input.flip();
-            output.put(input);
-            input.clear();
+        ByteBuffer input = cumulation != null ? cumulation : pool.acquire(READ_BUFFER_SIZE);
+        cumulation = null;
+        List<ByteBuffer> frames = loop.frames;
+        try {
+            int n = 0;
+            // 超过高水位后本轮也不再继续读
+            while (!readPaused && (n = sc.read(input)) > 0) {
+                metrics.bytesIn(n);
+                readAt = System.nanoTime();
+                input.flip();
+                if (decoder == null) {
+                    frames.add(input);
+                } else {
+                    decoder.decode(input, frames);
+                }
+                if (!frames.isEmpty()) {
+                    framesRead = true;
+                    onFrames(frames);
+                    frames.clear();
+                }
+                input = decoder == null ? input.clear() : compactOrGrow(input);
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+        } finally {
+            frames.clear();
+            if (decoder != null && sc.isOpen() && input.position() > 0) {
+                // 不完整的帧留到下次读，出错时由 close() 归还
+                cumulation = input;
+            } else {
+                pool.release(input);
+            }
         }
-        process();
+        readComplete();
     }
 
-    void process() {
-        startSendMode();
+    /**
+     * 把未解码的数据移到开头，满了说明一帧比 buffer 大，换一个两倍大的
+     */
+    private ByteBuffer compactOrGrow(ByteBuffer input) {
+        input.compact();
+        if (input.hasRemaining()) {
+            return input;
+        }
+        ByteBuffer bigger = pool.acquire(input.capacity() * 2);
+        bigger.put(input.flip());
+        pool.release(input);
+        return bigger;
     }
 
-    void send() throws IOException {
-        output.flip();
-        while (output.hasRemaining()) {
-            sc.write(output);
+    /**
+     * 一次读到的所有帧，默认直接在 Reactor 线程中处理
+     */
+    void onFrames(List<ByteBuffer> frames) throws IOException {
+        process(frames);
+    }
+
+    /**
+     * 本轮读完，默认尝试直接写出回复
+     */
+    void readComplete() throws IOException {
+        flush();
+        if (framesRead) {
+            framesRead = false;
+            recorder.message(System.nanoTime() - readAt);
+        }
+    }
+
+    /**
+     * 业务处理，默认原样回复
+     *
+     * @param frames 一次读到的所有帧，只在调用期间有效
+     */
+    void process(List<ByteBuffer> frames) {
+        for (ByteBuffer frame : frames) {
+            write(frame);
+        }
+    }
+
+    /**
+     * 把数据复制到发送队列，不会立即写 socket
+     */
+    void write(ByteBuffer src) {
+        pendingBytes += src.remaining();
+        ByteBuffer tail = outbound.peekLast();
+        while (src.hasRemaining()) {
+            if (tail == null || !tail.hasRemaining()) {
+                // 队列中的 buffer 处于写模式，flush 时再切换成读模式
+                tail = newOutboundBuffer(Math.min(Math.max(CHUNK_SIZE, src.remaining()), MAX_CHUNK_SIZE));
+                outbound.addLast(tail);
+            }
+            int length = Math.min(tail.remaining(), src.remaining());
+            int limit = src.limit();
+            src.limit(src.position() + length);
+            tail.put(src);
+            src.limit(limit);
+        }
+        checkHighWatermark();
+    }
+
+    /**
+     * 把调用方不再使用的 buffer 直接接到发送队列末尾，省去一次复制
+     *
+     * @param buffer 写模式并且已经写满，[0, position) 是要发送的数据；不是池中借出的，写完后由 GC 回收
+     */
+    void writeOwned(ByteBuffer buffer) {
+        pendingBytes += buffer.position();
+        outbound.addLast(buffer);
+        checkHighWatermark();
+    }
+
+    private void checkHighWatermark() {
+        if (highWatermark > 0 && pendingBytes > highWatermark) {
+            pauseRead();
         }
-        output.clear();
-        startReadMode();
     }
 
-    void startSendMode() {
-        mode = SENDING;
-        sk.interestOps(SelectionKey.OP_WRITE);
+    /**
+     * 停止关注 OP_READ，直到 {@link #readResumable()} 成立
+     */
+    void pauseRead() {
+        if (!readPaused) {
+            readPaused = true;
+            sk.interestOpsAnd(~SelectionKey.OP_READ);
+            metrics.readPaused();
+        }
     }
 
-    void startReadMode() {
-        mode = READING;
-        sk.interestOps(SelectionKey.OP_READ);
+    /**
+     * 读暂停后能否恢复，默认发送队列降到低水位即可，子类可以加上自己积压的条件
+     */
+    boolean readResumable() {
+        return pendingBytes <= lowWatermark;
+    }
+
+    void resumeReadIfPossible() {
+        if (readPaused && readResumable() && sk.isValid()) {
+            readPaused = false;
+            sk.interestOpsOr(SelectionKey.OP_READ);
+            metrics.readResumed();
+        }
+    }
+
+    /**
+     * 尽量写出发送队列，写不完则关注 OP_WRITE，写完则取消
+     */
+    void flush() throws IOException {
+        while (!outbound.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : outbound) {
+                if (count == MAX_GATHER) {
+                    break;
+                }
+                buffer.flip();
+                gather[count++] = buffer;
+            }
+            long written = sc.write(gather, 0, count);
+            if (written > 0) {
+                metrics.bytesOut(written);
+                writeAt = System.nanoTime();
+                pendingBytes -= written;
+                resumeReadIfPossible();
+            }
+            boolean drained = true;
+            for (int i = 0; i < count; i++) {
+                ByteBuffer buffer = gather[i];
+                gather[i] = null;
+                if (buffer.hasRemaining()) {
+                    // 没写完的部分留在队列中，恢复成可追加的写模式
+                    buffer.compact();
+                    drained = false;
+                } else {
+                    releaseOutboundBuffer(outbound.pollFirst());
+                }
+            }
+            if (!drained) {
+                // socket 发送缓冲区满了，等下次可写；处理过程中连接可能已被关闭
+                if (sk.isValid()) {
+                    sk.interestOpsOr(SelectionKey.OP_WRITE);
+                }
+                return;
+            }
+        }
+        if (sk.isValid() && (sk.interestOps() & SelectionKey.OP_WRITE) != 0) {
+            sk.interestOpsAnd(~SelectionKey.OP_WRITE);
+        }
+    }
+
+    @Override
+    public void onDispatchFailure() {
+        metrics.error();
+        close();
+    }
+
+    void close() {
+        if (!sc.isOpen()) {
+            return;
+        }
+        if (sk != null) {
+            sk.cancel();
+        }
+        if (idleTimeout != null) {
+            loop.timer.cancel(idleTimeout);
+        }
+        try {
+            sc.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (ByteBuffer buffer; (buffer = outbound.pollFirst()) != null; ) {
+            releaseOutboundBuffer(buffer);
+        }
+        if (cumulation != null) {
+            pool.release(cumulation);
+            cumulation = null;
+        }
+        if (readPaused) {
+            readPaused = false;
+            metrics.readResumed();
+        }
+        metrics.connectionClosed();
+        if (closeListener != null) {
+            closeListener.run();
+        }
+    }
+
+    ByteBuffer newOutboundBuffer(int size) {
+        return pool.acquire(size);
+    }
+
+    void releaseOutboundBuffer(ByteBuffer buffer) {
+        pool.release(buffer);
+    }
+
+    /**
+     * 出现在 {@link com.xioshe.only.java.base.metrics.LoopMetrics} 的最慢 handler 中
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + sc.socket().getRemoteSocketAddress();
+    }
+
+    /**
+     * 每个连接一个，反复调度，不为每次读写创建定时器
+     */
+    private class IdleTimeout extends HashedWheelTimer.Timeout {
+
+        @Override
+        void expire() {
+            long now = System.nanoTime();
+            long remaining = remaining(readIdleNanos, now - readAt);
+            remaining = Math.min(remaining, remaining(writeIdleNanos, now - writeAt));
+            remaining = Math.min(remaining, remaining(allIdleNanos, now - Math.max(readAt, writeAt)));
+            if (remaining <= 0) {
+                metrics.idleTimeout();
+                close();
+            } else {
+                loop.timer.schedule(this, remaining, now);
+            }
+        }
+
+        /**
+         * @return 距离超时还有多久，不检查时返回 {@link Long#MAX_VALUE}
+         */
+        private long remaining(long timeoutNanos, long idleNanos) {
+            return timeoutNanos > 0 ? timeoutNanos - idleNanos : Long.MAX_VALUE;
+        }
     }
 }
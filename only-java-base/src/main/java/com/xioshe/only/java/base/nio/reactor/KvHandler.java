@@ -0,0 +1,213 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 类 Redis 文本协议的 handler，每行一条命令，参数以空格分隔
+ * <pre>
+ * GET key          -> $len\nvalue\n 或 $-1\n
+ * SET key value    -> +OK\n
+ * DEL key          -> :1\n 或 :0\n
+ * INCR key         -> :n\n
+ * MGET key [key..] -> *n\n 后面跟 n 个 GET 的回复
+ * </pre>
+ * 出错回复 {@code -ERR message\n}。按 ISO-8859-1 编解码，字符数等于字节数。
+ * <p>
+ * 命令交给 {@link KvStore} 在 key 所属的线程中执行，结果可能晚于后面的命令到达。
+ * 每条命令在回复队列中占一个位置，队首完成后才按顺序写出，流水线上的回复顺序与请求一致。
+ * 回复队列只被连接所在的线程访问。排队的回复超过 {@link #MAX_PENDING_REPLIES} 时暂停读，写出一半后再恢复，
+ * 客户端发命令比分片线程处理得快时不会无限堆积。
+ *
+ * @author xioshe 2026-10-18
+ */
+class KvHandler extends IoHandler {
+
+    static final String OK = "+OK\n";
+    static final String NIL = "$-1\n";
+    static final String ERR_NOT_INTEGER = "-ERR value is not an integer or out of range\n";
+    static final int MAX_PENDING_REPLIES = 256;
+
+    final KvStore store;
+    /**
+     * 按请求顺序排队的回复，队首完成后写出
+     */
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    /**
+     * process() 执行期间完成的回复由 readComplete() 统一写出
+     */
+    private boolean processing;
+
+    KvHandler(SocketChannel sc, ServerMetrics metrics, KvStore store) {
+        super(sc, metrics);
+        this.store = store;
+    }
+
+    @Override
+    void process(List<ByteBuffer> frames) {
+        processing = true;
+        try {
+            for (ByteBuffer frame : frames) {
+                execute(StandardCharsets.ISO_8859_1.decode(frame).toString().strip().split(" +"));
+            }
+        } finally {
+            processing = false;
+        }
+        if (pending.size() > MAX_PENDING_REPLIES) {
+            pauseRead();
+        }
+    }
+
+    @Override
+    boolean readResumable() {
+        return super.readResumable() && pending.size() <= MAX_PENDING_REPLIES / 2;
+    }
+
+    private void execute(String[] args) {
+        String command = args[0].toUpperCase(Locale.ROOT);
+        switch (command) {
+            case "GET" -> {
+                if (arity(args, 2)) {
+                    submit(new Pending(1, null), 0, args[1], get(args[1]));
+                }
+            }
+            case "SET" -> {
+                if (arity(args, 3)) {
+                    String value = args[2];
+                    submit(new Pending(1, null), 0, args[1], m -> {
+                        m.put(args[1], value);
+                        return OK;
+                    });
+                }
+            }
+            case "DEL" -> {
+                if (arity(args, 2)) {
+                    submit(new Pending(1, null), 0, args[1], m -> m.remove(args[1]) != null ? ":1\n" : ":0\n");
+                }
+            }
+            case "INCR" -> {
+                if (arity(args, 2)) {
+                    submit(new Pending(1, null), 0, args[1], incr(args[1]));
+                }
+            }
+            case "MGET" -> {
+                if (args.length < 2) {
+                    error("wrong number of arguments for 'MGET'");
+                    return;
+                }
+                var slot = new Pending(args.length - 1, "*" + (args.length - 1) + "\n");
+                for (int i = 1; i < args.length; i++) {
+                    submit(slot, i - 1, args[i], get(args[i]));
+                }
+            }
+            case "" -> error("empty command");
+            default -> error("unknown command '" + args[0] + "'");
+        }
+    }
+
+    private static Function<Map<String, String>, String> get(String key) {
+        return m -> {
+            String value = m.get(key);
+            return value == null ? NIL : "$" + value.length() + "\n" + value + "\n";
+        };
+    }
+
+    private static Function<Map<String, String>, String> incr(String key) {
+        return m -> {
+            try {
+                return ":" + m.compute(key, (k, v) -> Long.toString(v == null ? 1 : Math.addExact(Long.parseLong(v), 1))) + "\n";
+            } catch (NumberFormatException | ArithmeticException e) {
+                return ERR_NOT_INTEGER;
+            }
+        };
+    }
+
+    private boolean arity(String[] args, int expected) {
+        if (args.length == expected) {
+            return true;
+        }
+        error("wrong number of arguments for '" + args[0] + "'");
+        return false;
+    }
+
+    private void error(String message) {
+        var slot = new Pending(1, null);
+        pending.addLast(slot);
+        complete(slot, 0, "-ERR " + message + "\n");
+    }
+
+    private void submit(Pending slot, int index, String key, Function<Map<String, String>, String> op) {
+        if (index == 0) {
+            pending.addLast(slot);
+        }
+        store.execute(key, loop, op, result -> complete(slot, index, result));
+    }
+
+    /**
+     * 在连接所在的线程中调用
+     */
+    private void complete(Pending slot, int index, String result) {
+        if (!sc.isOpen()) {
+            return;
+        }
+        slot.parts[index] = result;
+        slot.remaining--;
+        boolean written = false;
+        for (Pending head; (head = pending.peekFirst()) != null && head.remaining == 0; ) {
+            pending.pollFirst();
+            if (head.prefix != null) {
+                write(ascii(head.prefix));
+            }
+            for (String part : head.parts) {
+                write(ascii(part));
+            }
+            written = true;
+        }
+        if (written) {
+            resumeReadIfPossible();
+        }
+        if (written && !processing) {
+            // 其他线程送回的结果，没有 readComplete() 来写出
+            try {
+                flush();
+            } catch (IOException e) {
+                metrics.error();
+                close();
+            }
+        }
+    }
+
+    private static ByteBuffer ascii(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    void close() {
+        super.close();
+        pending.clear();
+    }
+
+    /**
+     * 一条命令的回复，MGET 由多个分片的结果拼成
+     */
+    static final class Pending {
+        final String prefix;
+        final String[] parts;
+        int remaining;
+
+        Pending(int parts, String prefix) {
+            this.prefix = prefix;
+            this.parts = new String[parts];
+            this.remaining = parts;
+        }
+    }
+}
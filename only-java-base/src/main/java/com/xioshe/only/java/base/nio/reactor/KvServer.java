@@ -0,0 +1,81 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 以 {@link MultiThreadReactor} 为前端的内存 KV 服务，协议见 {@link KvHandler}
+ * <p>
+ * 命令在 Reactor 线程中执行，不使用业务线程池。{@link Storage#SHARDED} 时数据按 key 分片到各个 SubReactor，
+ * 跨分片的命令经过目标线程的任务队列；{@link Storage#CONCURRENT} 时所有线程共用一个 ConcurrentHashMap，用作对照。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class KvServer implements AutoCloseable {
+
+    public static void main(String[] args) throws IOException {
+        // 传入 concurrent 参数使用共享的 ConcurrentHashMap
+        var storage = args.length > 0 && "concurrent".equals(args[0]) ? Storage.CONCURRENT : Storage.SHARDED;
+        var server = new KvServer(6380, new ReactorOptions(), storage);
+        server.getMetrics().register("KvServer");
+        server.start();
+    }
+
+    public enum Storage {
+        SHARDED, CONCURRENT
+    }
+
+    /**
+     * 一行命令的最大字节数
+     */
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final MultiThreadReactor reactor;
+    private final KvStore store;
+
+    /**
+     * @param options 会被改写：按行分帧、不使用业务线程池、使用 KV handler
+     */
+    public KvServer(int port, ReactorOptions options, Storage storage) {
+        // 先配置好再创建 Reactor，handler 在 accept 时才创建，那时分片已经确定
+        options.workerThreads(0)
+                .frameDecoder(() -> FrameDecoder.lines(MAX_LINE_LENGTH))
+                .handlerFactory(this::newHandler);
+        this.reactor = new MultiThreadReactor(port, options);
+        if (storage == Storage.SHARDED) {
+            var loops = new EventLoop[reactor.getReactorCount()];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = reactor.getReactor(i);
+            }
+            this.store = KvStore.sharded(loops);
+        } else {
+            this.store = KvStore.concurrent();
+        }
+    }
+
+    private KvHandler newHandler(SocketChannel sc, ServerMetrics metrics) {
+        return new KvHandler(sc, metrics, store);
+    }
+
+    /**
+     * @return 实际监听的端口
+     */
+    public int start() throws IOException {
+        return reactor.start();
+    }
+
+    public int getPort() {
+        return reactor.getPort();
+    }
+
+    public ServerMetrics getMetrics() {
+        return reactor.getMetrics();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reactor.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link KvHandler} 背后的存储，决定一条命令在哪个线程、哪张表上执行
+ * <p>
+ * 命令写成对 {@link Map} 的一次操作，只使用 get、put、remove、compute，
+ * 这样同一段代码在单线程的 {@link HashMap} 和 {@link ConcurrentHashMap} 上都是原子的。
+ *
+ * @author xioshe 2026-10-18
+ */
+public interface KvStore {
+
+    /**
+     * 执行一条单 key 命令，结果在 origin 的线程中交给 callback
+     *
+     * @param origin 发起命令的连接所在的事件循环，只能在它的线程中调用
+     */
+    void execute(String key, EventLoop origin, Function<Map<String, String>, String> op, Consumer<String> callback);
+
+    /**
+     * 按 key 的哈希分片，每个分片归一个 SubReactor 所有，只在该线程中访问，不加锁
+     * <br/>key 属于当前连接所在的线程时直接执行，否则通过目标线程的任务队列执行，结果再经任务队列送回
+     *
+     * @param loops 各分片所属的事件循环，通常是 {@link MultiThreadReactor} 的所有 SubReactor
+     */
+    static KvStore sharded(EventLoop[] loops) {
+        @SuppressWarnings("unchecked")
+        Map<String, String>[] shards = (Map<String, String>[]) new Map<?, ?>[loops.length];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new HashMap<>();
+        }
+        return (key, origin, op, callback) -> {
+            int h = key.hashCode();
+            int i = ((h ^ (h >>> 16)) & 0x7fffffff) % loops.length;
+            EventLoop owner = loops[i];
+            if (owner == origin) {
+                callback.accept(op.apply(shards[i]));
+                return;
+            }
+            owner.execute(() -> {
+                String result = op.apply(shards[i]);
+                origin.execute(() -> callback.accept(result));
+            });
+        };
+    }
+
+    /**
+     * 所有线程共用一个 {@link ConcurrentHashMap}，在当前线程直接执行，用作对照
+     */
+    static KvStore concurrent() {
+        Map<String, String> map = new ConcurrentHashMap<>();
+        return (key, origin, op, callback) -> callback.accept(op.apply(map));
+    }
+}
@@ -1,48 +1,134 @@
 package com.xioshe.only.java.base.nio.reactor;
 
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 用子线程来处理业务方法 process()
+ * <p>
+ * 读到的数据复制一份交给共享的 {@link OrderedWorkerPool}，同一连接的数据总由同一个线程按顺序处理。
+ * 子线程的回复放进无锁的回复队列，再通过 {@link EventLoop#execute(Runnable)} 让 Reactor 线程取出，直接接到发送队列末尾并写出。
+ * 发送队列和 selector 只被 Reactor 线程访问，不需要加锁，唤醒也按循环的 {@link WaitStrategy} 进行。
  *
  * @author xioshe 2022-04-30
  */
 public class MultiThreadIoHandler extends IoHandler {
 
-    static final int PROCESSING = 4;
+    private static final AtomicInteger SEQ = new AtomicInteger(0);
+
+    final OrderedWorkerPool workers;
+    /**
+     * 选择线程的 key，连续分配，连接均匀分布到各个线程
+     */
+    final int key = SEQ.getAndIncrement();
+    /**
+     * 子线程写入、Reactor 线程取出的回复
+     */
+    final Queue<ByteBuffer> replies = new ConcurrentLinkedQueue<>();
 
-    ExecutorService workerPool = Executors.newFixedThreadPool(5);
+    public MultiThreadIoHandler(SocketChannel sc, OrderedWorkerPool workers) {
+        this(sc, new ServerMetrics(), workers);
+    }
 
-    public MultiThreadIoHandler(SocketChannel sc) {
-        super(sc);
+    public MultiThreadIoHandler(SocketChannel sc, ServerMetrics metrics, OrderedWorkerPool workers) {
+        super(sc, metrics);
+        this.workers = workers;
     }
 
+    /**
+     * 帧是接收 buffer 的 slice，会被下次读覆盖，复制到一块堆内存后再交给子线程
+     */
     @Override
-    synchronized void read() throws IOException {
-        while (sc.read(input) > 0) {
-            input.flip();
-            output.put(input);
-            input.clear();
+    void onFrames(List<ByteBuffer> frames) throws IOException {
+        int total = 0;
+        for (ByteBuffer frame : frames) {
+            total += frame.remaining();
+        }
+        var data = ByteBuffer.allocate(total);
+        List<ByteBuffer> copies = new ArrayList<>(frames.size());
+        for (ByteBuffer frame : frames) {
+            copies.add(data.slice(data.position(), frame.remaining()));
+            data.put(frame);
+        }
+        try {
+            workers.execute(key, new Processor(copies, readAt));
+        } catch (RejectedExecutionException e) {
+            // 丢掉一段数据会破坏字节流，只能断开连接
+            throw new IOException("Worker queue is full", e);
+        }
+    }
+
+    /**
+     * 回复由子线程产生，这里不需要写出
+     */
+    @Override
+    void readComplete() {
+    }
+
+    /**
+     * 在子线程中执行
+     */
+    private void processAndHandOff(List<ByteBuffer> frames, long readAt) {
+        process(frames);
+        metrics.message(System.nanoTime() - readAt);
+        if (!replies.isEmpty()) {
+            loop.execute(this::drainReplies);
         }
-        mode = PROCESSING;
-        workerPool.execute(new Processor());
-        process();
     }
 
-    private synchronized void processAndHandOff() {
-        process();
+    /**
+     * 在子线程中由 process() 调用，复制一份放进回复队列，之后由 Reactor 线程直接接到发送队列，不再复制
+     */
+    @Override
+    void write(ByteBuffer src) {
+        replies.offer(ByteBuffer.allocate(src.remaining()).put(src));
+    }
 
-        // 唤醒主线程的 select
-        sk.selector().wakeup();
+    /**
+     * 在 Reactor 线程中执行，前一个任务可能已经取走了这批回复
+     */
+    private void drainReplies() {
+        if (!sc.isOpen()) {
+            return;
+        }
+        for (ByteBuffer reply; (reply = replies.poll()) != null; ) {
+            writeOwned(reply);
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            metrics.error();
+            close();
+        }
+    }
+
+    @Override
+    void close() {
+        super.close();
+        replies.clear();
     }
 
     class Processor implements Runnable {
+        final List<ByteBuffer> frames;
+        final long readAt;
+
+        Processor(List<ByteBuffer> frames, long readAt) {
+            this.frames = frames;
+            this.readAt = readAt;
+        }
+
         @Override
         public void run() {
-            processAndHandOff();
+            processAndHandOff(frames, readAt);
         }
     }
 }
@@ -1,39 +1,77 @@
 package com.xioshe.only.java.base.nio.reactor;
 
+import com.xioshe.only.java.base.metrics.LoopMetrics;
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * 多 Reactor 多线程
+ * <p>
+ * 默认由 MainReactor 上唯一的 Acceptor 接受连接，再按 {@link PlacementStrategy} 分给 SubReactor。
+ * SubReactor 数量默认与 CPU 核数相同，可以通过 {@link ReactorOptions#subReactors(int)} 指定。
+ * 开启 {@link ReactorOptions#reusePort(boolean)} 后，每个 SubReactor 用 SO_REUSEPORT 绑定同一端口，
+ * 自己 accept 自己处理，新连接由内核分散到各个线程，不再经过 MainReactor。
+ * <p>
+ * 其他线程通过 {@link #execute(int, Runnable)} 把任务交给指定的 SubReactor 线程执行，
+ * 新连接的注册也走这条路，selector 只会被它自己的线程操作。
  *
  * @author xioshe 2022-05-01
  */
-public class MultiThreadReactor {
+public class MultiThreadReactor implements AutoCloseable {
 
     public static void main(String[] args) throws IOException {
-        new MultiThreadReactor(8989).start();
+        // 传入 reuseport 参数开启多 Acceptor 模式
+        boolean reusePort = args.length > 0 && "reuseport".equals(args[0]);
+        // 传入第二个参数开启业务线程池，值为线程数
+        int workerThreads = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        var reactor = new MultiThreadReactor(8989, new ReactorOptions().reusePort(reusePort).workerThreads(workerThreads));
+        reactor.getMetrics().register("MultiThreadReactor");
+        for (int i = 0; i < reactor.getReactorCount(); i++) {
+            reactor.getLoopMetrics(i).register("MultiThreadReactor-" + i);
+        }
+        reactor.start();
     }
 
-    private final ExecutorService reactorPool = Executors.newFixedThreadPool(5);
-
-    private final Reactor mainReactor;
-    private final Reactor[] subReactors = new Reactor[4];
+    private final ExecutorService reactorPool;
+
+    private final EventLoop mainReactor;
+    private final EventLoop[] subReactors;
+    private final PlacementStrategy placement;
+    private final List<Acceptor> acceptors = new ArrayList<>();
+    private final ReactorOptions options;
+    private final ServerMetrics metrics = new ServerMetrics();
+    /**
+     * 所有 SubReactor 共享的业务线程池，未开启时为 null
+     */
+    private final OrderedWorkerPool workers;
     final int port;
 
     public MultiThreadReactor(int port) {
+        this(port, new ReactorOptions());
+    }
+
+    public MultiThreadReactor(int port, ReactorOptions options) {
         this.port = port;
+        this.options = options;
+        this.workers = options.newWorkerPool("MultiThreadReactor");
+        this.placement = options.placementStrategy();
+        this.subReactors = new EventLoop[options.subReactorCount()];
+        // MainReactor 加上所有 SubReactor
+        this.reactorPool = Executors.newFixedThreadPool(subReactors.length + 1);
         try {
-            mainReactor = new Reactor();
+            // MainReactor 只负责 accept，不需要抢占式的等待
+            mainReactor = new EventLoop(WaitStrategy.blocking(), options.optimizeSelectedKeys);
             for (int i = 0; i < subReactors.length; i++) {
                 // 每个 reactor 会创建一个 selector
-                subReactors[i] = new Reactor();
+                subReactors[i] = options.newEventLoop();
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -41,89 +79,150 @@ public class MultiThreadReactor {
 
     }
 
-    void start() throws IOException {
-        // 先注册 Acceptor 与 MainReactor
-        new Acceptor().register(mainReactor.getSelector(), port);
-        reactorPool.execute(mainReactor);
+    /**
+     * 绑定端口并在线程池中运行所有 Reactor，立即返回
+     *
+     * @return 实际监听的端口，构造时传入 0 则为随机端口
+     */
+    public int start() throws IOException {
+        if (options.reusePort && ReactorOptions.reusePortSupported()) {
+            // 每个 SubReactor 一个监听 socket，端口为 0 时后面的都绑定第一个拿到的端口
+            int boundPort = port;
+            for (EventLoop subReactor : subReactors) {
+                var acceptor = new Acceptor(subReactor);
+                acceptor.register(subReactor.getSelector(), boundPort, true);
+                acceptors.add(acceptor);
+                boundPort = acceptor.ssc.socket().getLocalPort();
+            }
+        } else {
+            if (options.reusePort) {
+                System.out.println("SO_REUSEPORT is not supported, fall back to single acceptor.");
+            }
+            // 先注册 Acceptor 与 MainReactor
+            var acceptor = new Acceptor(null);
+            acceptor.register(mainReactor.getSelector(), port, false);
+            acceptors.add(acceptor);
+            reactorPool.execute(mainReactor);
+        }
 
-        for (Reactor subReactor : subReactors) {
+        for (EventLoop subReactor : subReactors) {
             // 在子线程运行 Reactor
             reactorPool.execute(subReactor);
         }
+        return getPort();
     }
 
-    class Acceptor implements Runnable {
-        ServerSocketChannel ssc;
-        int next = 0;
+    public int getPort() {
+        return acceptors.get(0).ssc.socket().getLocalPort();
+    }
 
-        public void register(final Selector selector, int port) throws IOException {
-            this.ssc = ServerSocketChannel.open();
-            ssc.socket().bind(new InetSocketAddress(port));
-            ssc.configureBlocking(false);
-            ssc.register(selector, SelectionKey.OP_ACCEPT, this);
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getReactorCount() {
+        return subReactors.length;
+    }
+
+    /**
+     * 在指定 SubReactor 的线程中执行任务，可以在任意线程调用
+     *
+     * @param reactor SubReactor 序号，从 0 开始
+     * @param task    不应阻塞，否则会拖慢该 Reactor 上所有连接
+     */
+    public void execute(int reactor, Runnable task) {
+        subReactors[reactor].execute(task);
+    }
+
+    /**
+     * @param reactor SubReactor 序号，从 0 开始
+     */
+    public EventLoop getReactor(int reactor) {
+        return subReactors[reactor];
+    }
+
+    /**
+     * @param reactor SubReactor 序号，从 0 开始
+     */
+    public LoopMetrics getLoopMetrics(int reactor) {
+        return subReactors[reactor].metrics;
+    }
+
+    /**
+     * @return 所有 SubReactor 的 buffer 池统计之和
+     */
+    public BufferPool.Stats getBufferStats() {
+        var stats = new BufferPool.Stats(0, 0, 0, 0, 0);
+        for (EventLoop subReactor : subReactors) {
+            stats = stats.plus(subReactor.bufferPool.stats());
         }
+        return stats;
+    }
 
-        @Override
-        public synchronized void run() {
-            System.out.println("Acceptor start.");
-            try {
-                var sc = ssc.accept();
-                if (sc != null) {
-                    var sr = subReactors[next++];
-                    sr.register(new IoHandler(sc));
-                    // 多线程版 handler
-//                    sr.register(new MultiThreadIoHandler(sc));
-                    next %= subReactors.length;
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    /**
+     * 关闭监听端口并中断所有 Reactor 线程
+     */
+    @Override
+    public void close() throws IOException {
+        for (Acceptor acceptor : acceptors) {
+            acceptor.ssc.close();
+        }
+        // select() 响应中断
+        reactorPool.shutdownNow();
+        mainReactor.close();
+        for (EventLoop subReactor : subReactors) {
+            subReactor.close();
+        }
+        if (workers != null) {
+            workers.close();
         }
     }
 
+    /**
+     * 一次就绪事件最多 accept 的连接数，连接风暴时减少 select 次数，又不至于饿死其他连接
+     */
+    static final int MAX_ACCEPTS_PER_EVENT = 64;
 
-    static class Reactor implements Runnable {
-        final Selector selector;
-        public Reactor() throws IOException {
-            this.selector = Selector.open();
+    class Acceptor implements Runnable {
+        ServerSocketChannel ssc;
+        /**
+         * 为 null 时轮流分给 SubReactor，否则连接留在所属的 Reactor 中
+         */
+        final EventLoop owner;
+
+        Acceptor(EventLoop owner) {
+            this.owner = owner;
         }
-        public Selector getSelector() {
-            return selector;
+
+        public void register(final Selector selector, int port, boolean reusePort) throws IOException {
+            this.ssc = options.openServerChannel(port, reusePort);
+            ssc.configureBlocking(false);
+            ssc.register(selector, SelectionKey.OP_ACCEPT, this);
         }
 
         @Override
         public void run() {
-            System.out.println("Reactor start in thread-" + Thread.currentThread().getId());
             try {
-                while (!Thread.currentThread().isInterrupted()) {
-                    selector.select();
-                    Set<SelectionKey> selected = selector.selectedKeys();
-                    Iterator<SelectionKey> it = selected.iterator();
-                    while (it.hasNext()) {
-                        SelectionKey sk = it.next();
-                        dispatch(sk);
-                        it.remove();
+                for (int i = 0; i < MAX_ACCEPTS_PER_EVENT; i++) {
+                    var sc = ssc.accept();
+                    if (sc == null) {
+                        break;
                     }
+                    options.configure(sc);
+                    metrics.connectionAccepted();
+                    var sr = owner != null ? owner : nextReactor();
+                    sr.register(options.newHandler(sc, metrics, workers));
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
-        void dispatch(SelectionKey k) {
-            Runnable r = (Runnable) (k.attachment()); // 拿到通道注册时附加的对象
-            if (r != null) r.run();
-        }
 
         /**
-         * 向 Reactor 中注册 IoHandler，所以这个方法只适用于 SubReactor
-         * <br/>所以注册事件发生在调用线程中，也就是 Acceptor 所在线程上。
-         * <br/>如果想提升性能，可以使用一个同步队列来延迟注册
-         *
-         * @param basicHandler {@link IoHandler}
+         * 只在 MainReactor 线程中调用，不需要同步
          */
-        void register(IoHandler basicHandler) throws IOException {
-            basicHandler.register(selector);
+        private EventLoop nextReactor() {
+            return subReactors[placement.place(subReactors)];
         }
     }
-
 }
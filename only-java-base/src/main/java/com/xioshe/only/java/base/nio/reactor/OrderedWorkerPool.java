@@ -0,0 +1,139 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 key 保序的共享业务线程池
+ * <p>
+ * 每个线程有自己的有界队列，同一个 key 的任务总是进入同一个队列，所以按提交顺序串行执行；
+ * 不同 key 散列到不同线程上并行执行。线程数固定，与连接数无关。
+ * <p>
+ * 队列满时由 {@link SaturationPolicy} 决定如何处理。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class OrderedWorkerPool implements AutoCloseable {
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum SaturationPolicy {
+        /**
+         * 立即抛出 {@link RejectedExecutionException}
+         */
+        REJECT,
+        /**
+         * 在提交线程上等待队列空位，超时后按 REJECT 处理。
+         * 提交线程通常是 Reactor 线程，等待期间不再读取新数据，形成反压
+         */
+        WAIT
+    }
+
+    private final Worker[] workers;
+    private final SaturationPolicy policy;
+    private final long waitMillis;
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    /**
+     * @param name          线程名前缀
+     * @param threads       线程数
+     * @param queueCapacity 每个线程的队列长度
+     * @param policy        队列满时的处理方式
+     * @param waitMillis    {@link SaturationPolicy#WAIT} 时等待队列空位的时长
+     */
+    public OrderedWorkerPool(String name, int threads, int queueCapacity,
+                             SaturationPolicy policy, long waitMillis) {
+        this.policy = policy;
+        this.waitMillis = waitMillis;
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(new ArrayBlockingQueue<>(queueCapacity), name + "-worker-" + i);
+            workers[i].thread.start();
+        }
+    }
+
+    /**
+     * 提交任务，key 相同的任务按提交顺序执行
+     *
+     * @throws RejectedExecutionException 队列已满或线程池已关闭
+     */
+    public void execute(int key, Runnable task) {
+        // 打散低位相近的 key，比如连续分配的连接序号
+        int h = key ^ (key >>> 16);
+        var worker = workers[Math.floorMod(h, workers.length)];
+        if (worker.queue.offer(task)) {
+            return;
+        }
+        if (policy == SaturationPolicy.WAIT && !worker.thread.isInterrupted()) {
+            try {
+                if (worker.queue.offer(task, waitMillis, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        rejected.incrementAndGet();
+        throw new RejectedExecutionException("worker queue is full");
+    }
+
+    /**
+     * @return 所有队列中等待执行的任务数
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (Worker worker : workers) {
+            queued += worker.queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * @return 累计被拒绝的任务数
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * 中断所有线程，队列中未执行的任务被丢弃
+     */
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+    }
+
+    private static class Worker implements Runnable {
+        final BlockingQueue<Runnable> queue;
+        final Thread thread;
+
+        Worker(BlockingQueue<Runnable> queue, String name) {
+            this.queue = queue;
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Runnable task = queue.take();
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        // 一个任务失败不影响同一线程上的其他 key
+                        e.printStackTrace();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // close() 中断，正常退出
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+/**
+ * 决定新连接交给哪个 SubReactor
+ * <p>
+ * 只在 MainReactor 的 Acceptor 线程中调用，实现可以有状态而不需要同步。
+ * 开启 reusePort 时连接由内核分配，不使用该策略。
+ *
+ * @author xioshe 2026-10-18
+ */
+public interface PlacementStrategy {
+
+    /**
+     * @param reactors 所有 SubReactor 当前的负载，读数是近似值
+     * @return 选中的下标
+     */
+    int place(Load[] reactors);
+
+    /**
+     * SubReactor 的负载读数
+     */
+    interface Load {
+
+        /**
+         * @return 当前分配到该 Reactor 上的连接数
+         */
+        int connections();
+
+        /**
+         * @return 最近几轮事件循环处理耗时的平滑值，纳秒，空闲等待期间随时间衰减
+         */
+        long loopLatencyNanos();
+    }
+
+    /**
+     * 轮流分配，不看负载
+     */
+    static PlacementStrategy roundRobin() {
+        return new PlacementStrategy() {
+            int next = 0;
+
+            @Override
+            public int place(Load[] reactors) {
+                int index = next;
+                next = (next + 1) % reactors.length;
+                return index;
+            }
+        };
+    }
+
+    /**
+     * 选连接数最少的
+     */
+    static PlacementStrategy leastConnections() {
+        return new Least() {
+            @Override
+            long loadOf(Load reactor) {
+                return reactor.connections();
+            }
+        };
+    }
+
+    /**
+     * 选最近事件循环最空闲的，连接数相近但有的连接特别活跃时比 leastConnections 更均衡
+     * <p>
+     * 循环耗时要等新连接开始收发后才会变化，只看它的话一批同时到达的连接会全部落到同一个 Reactor。
+     * 所以每个 Reactor 的负载是循环耗时加上连接数乘以所有 Reactor 平均每个连接的耗时，刚分到的连接立即计入。
+     */
+    static PlacementStrategy leastLoopLatency() {
+        return new Least() {
+            long perConnection;
+
+            @Override
+            public int place(Load[] reactors) {
+                long latency = 0;
+                long connections = 0;
+                for (Load reactor : reactors) {
+                    latency += reactor.loopLatencyNanos();
+                    connections += reactor.connections();
+                }
+                perConnection = connections == 0 ? 0 : latency / connections;
+                return super.place(reactors);
+            }
+
+            @Override
+            long loadOf(Load reactor) {
+                return reactor.loopLatencyNanos() + reactor.connections() * perConnection;
+            }
+        };
+    }
+
+    /**
+     * 选负载最小的，负载相同时选连接数少的，仍然相同时从上次选中位置的下一个开始轮流分配
+     */
+    abstract class Least implements PlacementStrategy {
+        private int start = 0;
+
+        abstract long loadOf(Load reactor);
+
+        @Override
+        public int place(Load[] reactors) {
+            int best = start;
+            long bestLoad = loadOf(reactors[best]);
+            for (int i = 1; i < reactors.length; i++) {
+                int index = (start + i) % reactors.length;
+                long load = loadOf(reactors[index]);
+                if (load < bestLoad
+                        || load == bestLoad && reactors[index].connections() < reactors[best].connections()) {
+                    best = index;
+                    bestLoad = load;
+                }
+            }
+            start = (best + 1) % reactors.length;
+            return best;
+        }
+    }
+}
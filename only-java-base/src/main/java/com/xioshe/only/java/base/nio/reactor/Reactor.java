@@ -1,11 +1,18 @@
 package com.xioshe.only.java.base.nio.reactor;
 
+import com.xioshe.only.java.base.metrics.LoopMetrics;
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.nio.channels.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 单线程 Reactor
+ * <p>
+ * accept 与所有连接的读写都在同一个 {@link EventLoop} 中完成。
+ * 还可以通过 {@link #bindDatagram(int)} 在同一个循环上处理 UDP 报文。
  *
  * @author xioshe 2022-04-29
  */
@@ -22,47 +29,107 @@ public class Reactor implements Runnable, AutoCloseable {
         }
     }
 
-    final Selector selector;
+    final EventLoop loop;
     final ServerSocketChannel ssc;
+    final ServerMetrics metrics = new ServerMetrics();
+    final OrderedWorkerPool workers;
+    final ReactorOptions options;
+    final List<DatagramChannel> datagramChannels = new ArrayList<>();
+    private Thread thread;
 
+    /**
+     * 默认把业务处理交给与 CPU 核数相同的业务线程
+     */
     public Reactor(int port) throws IOException {
-        this.selector = Selector.open();
-        this.ssc = ServerSocketChannel.open();
-        ssc.socket().bind(new InetSocketAddress(port));
+        this(port, new ReactorOptions().workerThreads(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param options 单线程版本不使用 reusePort
+     */
+    public Reactor(int port, ReactorOptions options) throws IOException {
+        this.options = options;
+        this.loop = options.newEventLoop();
+        this.ssc = options.openServerChannel(port, false);
+        this.workers = options.newWorkerPool("Reactor");
         // 注册 ServerSocketChannel
-        new Acceptor(ssc).register(selector);
+        new Acceptor(ssc, options, metrics, loop, workers).register(loop.getSelector());
+    }
+
+    /**
+     * 在新线程中运行 Reactor，立即返回
+     *
+     * @return 实际监听的端口
+     */
+    public int start() {
+        thread = new Thread(this, "Reactor");
+        thread.start();
+        return getPort();
+    }
+
+    /**
+     * 绑定 UDP 端口，由 {@link DatagramHandler} 在本 Reactor 的循环中回显报文，可以在启动前后调用
+     *
+     * @param port 为 0 时随机分配
+     * @return 实际绑定的端口
+     */
+    public int bindDatagram(int port) throws IOException {
+        var dc = options.openDatagramChannel(port);
+        datagramChannels.add(dc);
+        var handler = new DatagramHandler(dc, metrics);
+        loop.execute(() -> {
+            try {
+                handler.register(loop);
+            } catch (IOException e) {
+                metrics.error();
+                handler.close();
+            }
+        });
+        return dc.socket().getLocalPort();
+    }
+
+    public int getPort() {
+        return ssc.socket().getLocalPort();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public LoopMetrics getLoopMetrics() {
+        return loop.metrics;
+    }
+
+    public BufferPool.Stats getBufferStats() {
+        return loop.bufferPool.stats();
+    }
+
+    /**
+     * @return 可以用来提交任务和定时任务
+     */
+    public EventLoop getLoop() {
+        return loop;
     }
 
     @Override
     public void run() {
         // 内部流程从此开始
-        try {
-            while (!Thread.currentThread().isInterrupted()) {
-                // 监听事件
-                selector.select();
-                var keys = selector.selectedKeys();
-                var it = keys.iterator();
-                while (it.hasNext()) {
-                    // 分发事件
-                    dispatch(it.next());
-                    it.remove();
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        loop.run();
     }
 
     @Override
     public void close() throws IOException {
+        if (thread != null) {
+            // select() 响应中断，会立即返回
+            thread.interrupt();
+        }
         ssc.close();
-        selector.close();
-    }
-
-    private void dispatch(SelectionKey sk) throws ClosedChannelException {
-        Runnable handler = (Runnable) sk.attachment();
-        if (handler != null) {
-            handler.run();
+        for (DatagramChannel dc : datagramChannels) {
+            dc.close();
+        }
+        loop.close();
+        if (workers != null) {
+            workers.close();
         }
     }
 
@@ -72,11 +139,20 @@ public class Reactor implements Runnable, AutoCloseable {
     static class Acceptor implements Runnable {
 
         final ServerSocketChannel ssc;
+        final ReactorOptions options;
+        final ServerMetrics metrics;
+        final EventLoop loop;
+        final OrderedWorkerPool workers;
 
         SelectionKey acceptKey;
 
-        public Acceptor(ServerSocketChannel ssc) {
+        public Acceptor(ServerSocketChannel ssc, ReactorOptions options, ServerMetrics metrics,
+                        EventLoop loop, OrderedWorkerPool workers) {
             this.ssc = ssc;
+            this.options = options;
+            this.metrics = metrics;
+            this.loop = loop;
+            this.workers = workers;
         }
 
         public void register(Selector selector) throws IOException {
@@ -92,9 +168,10 @@ public class Reactor implements Runnable, AutoCloseable {
                 var socketChannel = ssc.accept();
                 if (socketChannel != null) {
                     System.out.println(socketChannel.getRemoteAddress());
-                    // 注册 SocketChannel
-//                    new IoHandler(socketChannel).register(acceptKey.selector());
-                    new MultiThreadIoHandler(socketChannel).register(acceptKey.selector());
+                    options.configure(socketChannel);
+                    metrics.connectionAccepted();
+                    // 注册 SocketChannel，在本轮循环末尾完成
+                    loop.register(options.newHandler(socketChannel, metrics, workers));
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -0,0 +1,317 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Reactor 的可选配置，setter 返回自身便于链式调用
+ * <p>
+ * 缓冲区大小为 0 表示使用系统默认值。
+ *
+ * @author xioshe 2026-10-18
+ */
+public class ReactorOptions {
+
+    int backlog = 50;
+    boolean tcpNoDelay = false;
+    int receiveBufferSize = 0;
+    int sendBufferSize = 0;
+    boolean reusePort = false;
+    int subReactors = 0;
+    PlacementStrategy placement;
+    WaitStrategy waitStrategy = WaitStrategy.blocking();
+    boolean optimizeSelectedKeys = true;
+    long readIdleNanos = 0;
+    long writeIdleNanos = 0;
+    long allIdleNanos = 0;
+    Supplier<FrameDecoder> frameDecoder;
+    /**
+     * 为 null 时按 workerThreads 选择 {@link IoHandler} 或 {@link MultiThreadIoHandler}
+     */
+    BiFunction<SocketChannel, ServerMetrics, IoHandler> handlerFactory;
+    long lowWatermark = 0;
+    long highWatermark = 0;
+    int workerThreads = 0;
+    int workerQueueCapacity = 1024;
+    OrderedWorkerPool.SaturationPolicy saturationPolicy = OrderedWorkerPool.SaturationPolicy.WAIT;
+    long saturationWaitMillis = 1000;
+
+    /**
+     * @param backlog 等待 accept 的连接队列长度
+     */
+    public ReactorOptions backlog(int backlog) {
+        this.backlog = backlog;
+        return this;
+    }
+
+    /**
+     * @param tcpNoDelay 是否关闭 Nagle 算法
+     */
+    public ReactorOptions tcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    /**
+     * @param size SO_RCVBUF，设置在监听端口上，accept 出来的连接会继承
+     */
+    public ReactorOptions receiveBufferSize(int size) {
+        this.receiveBufferSize = size;
+        return this;
+    }
+
+    /**
+     * @param size SO_SNDBUF
+     */
+    public ReactorOptions sendBufferSize(int size) {
+        this.sendBufferSize = size;
+        return this;
+    }
+
+    /**
+     * @param reusePort 为 true 时每个 SubReactor 用 SO_REUSEPORT 绑定同一端口，各自 accept，
+     *                  由内核在多个监听 socket 之间分配新连接。平台不支持时退回单个 Acceptor
+     */
+    public ReactorOptions reusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    /**
+     * @param count SubReactor 数量，为 0 时与 CPU 核数相同
+     */
+    public ReactorOptions subReactors(int count) {
+        this.subReactors = count;
+        return this;
+    }
+
+    /**
+     * @param placement 新连接的分配策略，默认 {@link PlacementStrategy#roundRobin()}。
+     *                  策略对象有状态，不要在多个 Reactor 之间共用
+     */
+    public ReactorOptions placement(PlacementStrategy placement) {
+        this.placement = placement;
+        return this;
+    }
+
+    /**
+     * @param waitStrategy 事件循环空闲时的等待方式，默认 {@link WaitStrategy#blocking()}。
+     *                     多 Reactor 时只用于 SubReactor
+     */
+    public ReactorOptions waitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        return this;
+    }
+
+    /**
+     * @param optimize 是否把 selector 的 selectedKeys 换成数组实现，替换失败时自动退回 JDK 实现
+     */
+    public ReactorOptions optimizeSelectedKeys(boolean optimize) {
+        this.optimizeSelectedKeys = optimize;
+        return this;
+    }
+
+    /**
+     * 空闲超时，超时的连接会被关闭，为 null 或 0 表示不检查。精度约 100ms
+     *
+     * @param readIdle  多久没读到数据
+     * @param writeIdle 多久没写出数据
+     * @param allIdle   多久既没读到也没写出
+     */
+    public ReactorOptions idleTimeouts(Duration readIdle, Duration writeIdle, Duration allIdle) {
+        this.readIdleNanos = readIdle == null ? 0 : readIdle.toNanos();
+        this.writeIdleNanos = writeIdle == null ? 0 : writeIdle.toNanos();
+        this.allIdleNanos = allIdle == null ? 0 : allIdle.toNanos();
+        return this;
+    }
+
+    /**
+     * @param frameDecoder 为每个连接创建一个 decoder，比如 {@code () -> FrameDecoder.lines(8192)}；
+     *                     为 null 时不分帧，每次读到的数据作为一帧
+     */
+    public ReactorOptions frameDecoder(Supplier<FrameDecoder> frameDecoder) {
+        this.frameDecoder = frameDecoder;
+        return this;
+    }
+
+    /**
+     * 每个连接待发送字节数的高低水位：超过高水位暂停读取，写到低水位以下恢复
+     *
+     * @param low  低水位，应小于高水位
+     * @param high 高水位，0 表示不限制
+     */
+    public ReactorOptions writeWatermarks(long low, long high) {
+        if (high > 0 && low >= high) {
+            throw new IllegalArgumentException("low watermark must be less than high watermark");
+        }
+        this.lowWatermark = low;
+        this.highWatermark = high;
+        return this;
+    }
+
+    /**
+     * 把连接变成文件下载，协议见 {@link FileServerHandler}，文件内容用 transferTo 发送，不使用业务线程池
+     *
+     * @param root 只能下载这个目录下的文件
+     */
+    public ReactorOptions serveFiles(Path root) throws IOException {
+        Path real = root.toRealPath();
+        return workerThreads(0)
+                .frameDecoder(() -> FrameDecoder.lines(4096))
+                .handlerFactory((sc, metrics) -> new FileServerHandler(sc, metrics, real));
+    }
+
+    /**
+     * 自定义业务 handler，此时不再使用业务线程池
+     */
+    ReactorOptions handlerFactory(BiFunction<SocketChannel, ServerMetrics, IoHandler> handlerFactory) {
+        this.handlerFactory = handlerFactory;
+        return this;
+    }
+
+    EventLoop newEventLoop() throws IOException {
+        return new EventLoop(waitStrategy, optimizeSelectedKeys);
+    }
+
+    int subReactorCount() {
+        return subReactors > 0 ? subReactors : Runtime.getRuntime().availableProcessors();
+    }
+
+    PlacementStrategy placementStrategy() {
+        return placement != null ? placement : PlacementStrategy.roundRobin();
+    }
+
+    /**
+     * @param threads 业务线程数，大于 0 时 process() 交给共享的 {@link OrderedWorkerPool} 执行，
+     *                为 0 时在 Reactor 线程中执行
+     */
+    public ReactorOptions workerThreads(int threads) {
+        this.workerThreads = threads;
+        return this;
+    }
+
+    /**
+     * @param capacity 每个业务线程的任务队列长度
+     */
+    public ReactorOptions workerQueueCapacity(int capacity) {
+        this.workerQueueCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * @param policy     业务队列满时的处理方式
+     * @param waitMillis {@link OrderedWorkerPool.SaturationPolicy#WAIT} 时的等待时长
+     */
+    public ReactorOptions saturationPolicy(OrderedWorkerPool.SaturationPolicy policy, long waitMillis) {
+        this.saturationPolicy = policy;
+        this.saturationWaitMillis = waitMillis;
+        return this;
+    }
+
+    /**
+     * @return 未开启业务线程时返回 null
+     */
+    OrderedWorkerPool newWorkerPool(String name) {
+        if (workerThreads <= 0) {
+            return null;
+        }
+        return new OrderedWorkerPool(name, workerThreads, workerQueueCapacity, saturationPolicy, saturationWaitMillis);
+    }
+
+    /**
+     * 为新连接创建 handler，workers 为 null 时在 Reactor 线程中处理业务，设置了 handlerFactory 时忽略 workers
+     */
+    IoHandler newHandler(SocketChannel sc, ServerMetrics metrics, OrderedWorkerPool workers) {
+        IoHandler handler;
+        if (handlerFactory != null) {
+            handler = handlerFactory.apply(sc, metrics);
+        } else {
+            handler = workers == null ? new IoHandler(sc, metrics) : new MultiThreadIoHandler(sc, metrics, workers);
+        }
+        handler.idleTimeouts(readIdleNanos, writeIdleNanos, allIdleNanos);
+        handler.writeWatermarks(lowWatermark, highWatermark);
+        if (frameDecoder != null) {
+            handler.decoder = frameDecoder.get();
+        }
+        return handler;
+    }
+
+    /**
+     * 打开并绑定监听端口，此时还是阻塞模式
+     *
+     * @param port      0 表示随机端口
+     * @param reusePort 是否设置 SO_REUSEPORT，调用方需先确认平台支持
+     */
+    ServerSocketChannel openServerChannel(int port, boolean reusePort) throws IOException {
+        var ssc = ServerSocketChannel.open();
+        try {
+            ssc.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (reusePort) {
+                ssc.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            // 大于 64K 的接收窗口需要在 listen 之前设置
+            if (receiveBufferSize > 0) {
+                ssc.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            }
+            ssc.bind(new InetSocketAddress(port), backlog);
+        } catch (IOException e) {
+            ssc.close();
+            throw e;
+        }
+        return ssc;
+    }
+
+    /**
+     * 打开并绑定 UDP 端口，复用 TCP 的收发缓冲区设置
+     */
+    DatagramChannel openDatagramChannel(int port) throws IOException {
+        var dc = DatagramChannel.open();
+        try {
+            dc.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (receiveBufferSize > 0) {
+                dc.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+            }
+            if (sendBufferSize > 0) {
+                dc.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+            }
+            dc.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            dc.close();
+            throw e;
+        }
+        return dc;
+    }
+
+    /**
+     * 设置 accept 出来的连接
+     */
+    void configure(SocketChannel sc) throws IOException {
+        if (tcpNoDelay) {
+            sc.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        if (sendBufferSize > 0) {
+            sc.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+        }
+    }
+
+    /**
+     * @return 当前平台是否支持 SO_REUSEPORT
+     */
+    static boolean reusePortSupported() {
+        try (var ssc = ServerSocketChannel.open()) {
+            return ssc.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
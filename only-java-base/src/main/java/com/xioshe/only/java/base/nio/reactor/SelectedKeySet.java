@@ -0,0 +1,105 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.misc.SomethingUnsafe;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 替换 JDK selector 内部 selectedKeys 的数组实现
+ * <p>
+ * JDK 用 HashSet 保存就绪的 key，每次事件都要计算哈希，遍历时还要创建迭代器并逐个删除。
+ * 这里 select 时只往数组末尾追加，事件循环按下标遍历并逐个置空，最后把 size 归零，整个过程不产生垃圾。
+ * <p>
+ * 替换需要通过 {@link Unsafe} 改写 {@code sun.nio.ch.SelectorImpl} 的私有字段，
+ * 不是该实现或者访问被拒绝时 {@link #install(Selector)} 返回 null，调用方退回迭代器遍历。
+ *
+ * @author xioshe 2026-10-18
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+    SelectionKey[] keys = new SelectionKey[1024];
+    int size;
+
+    @Override
+    public boolean add(SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size++] = key;
+        return true;
+    }
+
+    /**
+     * selector 在 add 之前会先调用 contains，线性查找太慢。
+     * 每轮都会清空，同一个 key 在一轮 select 中重复出现时只是多分发一次，handler 会按就绪状态处理
+     */
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<>() {
+            int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index++];
+            }
+        };
+    }
+
+    /**
+     * 把 selector 的 selectedKeys 替换成数组实现
+     *
+     * @return 替换失败返回 null，selector 保持原样
+     */
+    static SelectedKeySet install(Selector selector) {
+        try {
+            Class<?> impl = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+            if (!impl.isInstance(selector)) {
+                return null;
+            }
+            // 模块没有开放，不能 setAccessible，直接按偏移量写字段
+            Field selectedKeys = impl.getDeclaredField("selectedKeys");
+            Field publicSelectedKeys = impl.getDeclaredField("publicSelectedKeys");
+            Unsafe unsafe = SomethingUnsafe.stealInstance();
+            var set = new SelectedKeySet();
+            unsafe.putObject(selector, unsafe.objectFieldOffset(selectedKeys), set);
+            unsafe.putObject(selector, unsafe.objectFieldOffset(publicSelectedKeys), set);
+            return set;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            System.out.println("Fall back to JDK selected key set: " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+/**
+ * 作为 SelectionKey 附件注册到 {@link EventLoop} 上的 handler，就绪时由循环线程调用 {@link #run()}
+ *
+ * @author xioshe 2026-10-18
+ */
+interface SelectionHandler extends Runnable {
+
+    /**
+     * {@link #run()} 抛出异常后由循环线程调用，此时通道可能处于不一致的状态，通常记一次错误并关闭
+     */
+    void onDispatchFailure();
+}
@@ -0,0 +1,120 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 事件循环没有待办任务时如何等待 IO 事件
+ * <p>
+ * 阻塞等待不占 CPU，但被唤醒要经过一次系统调用和线程调度；自旋能更快发现新事件，代价是一直占着一个核。
+ * 延迟敏感的部署用 {@link #busySpin()} 或 {@link #spinYieldPark(int, int, long)}，批处理部署用 {@link #blocking()}。
+ *
+ * @author xioshe 2026-10-18
+ */
+public interface WaitStrategy {
+
+    /**
+     * 等待直到有 IO 事件、有新任务或到达 deadline，可以提前返回
+     *
+     * @param selector 事件循环的 selector，返回时就绪的 key 已经在 selectedKeys 中
+     * @param deadline 下一个定时任务的到期时刻，{@link System#nanoTime()} 时间，没有定时任务时为 {@link Long#MAX_VALUE}
+     * @param hasTasks 任务队列是否非空
+     */
+    void await(Selector selector, long deadline, BooleanSupplier hasTasks) throws IOException;
+
+    /**
+     * 其他线程提交任务后唤醒 {@link #await} 中的事件循环线程，同一轮等待只会调用一次
+     */
+    default void wakeup(Selector selector, Thread loop) {
+        selector.wakeup();
+    }
+
+    /**
+     * 阻塞在 select() 上，有定时任务时等到其到期
+     */
+    static WaitStrategy blocking() {
+        return (selector, deadline, hasTasks) -> {
+            if (deadline == Long.MAX_VALUE) {
+                selector.select();
+            } else {
+                selectUntil(selector, deadline);
+            }
+        };
+    }
+
+    /**
+     * 每次最多阻塞 maxWaitMillis，事件循环会定期醒来执行到期的定时任务
+     */
+    static WaitStrategy timed(long maxWaitMillis) {
+        return (selector, deadline, hasTasks) -> {
+            long maxDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            selectUntil(selector, Math.min(deadline, maxDeadline));
+        };
+    }
+
+    /**
+     * 不断调用 selectNow()，一直占用一个核
+     */
+    static WaitStrategy busySpin() {
+        return new WaitStrategy() {
+            @Override
+            public void await(Selector selector, long deadline, BooleanSupplier hasTasks) throws IOException {
+                while (selector.selectNow() == 0 && !hasTasks.getAsBoolean() && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+            }
+
+            @Override
+            public void wakeup(Selector selector, Thread loop) {
+                // 自旋中会检查任务队列，不需要唤醒
+            }
+        };
+    }
+
+    /**
+     * 先自旋 spins 次，再 yield yields 次，之后每次 park 最多 maxParkNanos 再检查一次
+     * <br/>park 期间到达的 IO 事件要等 park 结束才能发现，maxParkNanos 就是空闲后的最大唤醒延迟
+     */
+    static WaitStrategy spinYieldPark(int spins, int yields, long maxParkNanos) {
+        return new WaitStrategy() {
+            @Override
+            public void await(Selector selector, long deadline, BooleanSupplier hasTasks) throws IOException {
+                for (int i = 0; ; i++) {
+                    if (selector.selectNow() > 0 || hasTasks.getAsBoolean()) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    if (now >= deadline) {
+                        return;
+                    }
+                    if (i < spins) {
+                        Thread.onSpinWait();
+                    } else if (i < spins + yields) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(Math.min(maxParkNanos, deadline - now));
+                    }
+                }
+            }
+
+            @Override
+            public void wakeup(Selector selector, Thread loop) {
+                LockSupport.unpark(loop);
+            }
+        };
+    }
+
+    private static void selectUntil(Selector selector, long deadline) throws IOException {
+        long nanos = deadline - System.nanoTime();
+        if (nanos <= 0) {
+            // select(0) 会一直阻塞，已经到期的直接返回
+            selector.selectNow();
+        } else {
+            // 向上取整，避免不足 1ms 时空转
+            selector.select(TimeUnit.NANOSECONDS.toMillis(nanos + 999_999));
+        }
+    }
+}
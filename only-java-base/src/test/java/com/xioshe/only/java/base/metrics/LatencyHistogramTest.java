@@ -0,0 +1,58 @@
+package com.xioshe.only.java.base.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * {@link LatencyHistogram} 的精度与分位值计算
+ *
+ * @author xioshe 2026-10-18
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void index_and_value_round_trip_within_precision() {
+        for (long v : new long[]{0, 1, 127, 128, 129, 1_000, 65_535, 1_000_000, 123_456_789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(v);
+            assertThat(index).isBetween(0, LatencyHistogram.BUCKET_COUNT - 1);
+            long high = LatencyHistogram.highestValueOf(index);
+            assertThat(high).as("桶上界不小于原值").isGreaterThanOrEqualTo(v);
+            assertThat((double) (high - v)).as("相对误差不超过 1/64").isLessThanOrEqualTo(v / 64.0);
+        }
+    }
+
+    @Test
+    void percentiles_of_uniform_values() {
+        // 单写者版本只是换了写入方式，结果一致
+        for (var histogram : new LatencyHistogram[]{new LatencyHistogram(), LatencyHistogram.singleWriter()}) {
+            for (int i = 1; i <= 10_000; i++) {
+                histogram.record(i * 1_000L);
+            }
+            assertThat(histogram.getTotalCount()).isEqualTo(10_000);
+            assertThat(histogram.getMax()).isEqualTo(10_000_000);
+            assertThat(histogram.getMean()).isCloseTo(5_000_500, within(1.0));
+            assertThat(histogram.valueAtPercentile(50)).isCloseTo(5_000_000L, within(5_000_000L / 64));
+            assertThat(histogram.valueAtPercentile(99)).isCloseTo(9_900_000L, within(9_900_000L / 64));
+            assertThat(histogram.valueAtPercentile(100)).isEqualTo(10_000_000);
+        }
+    }
+
+    @Test
+    void add_merges_counts_and_max() {
+        var a = new LatencyHistogram();
+        var b = new LatencyHistogram();
+        a.record(10);
+        b.record(20);
+        b.record(5_000);
+        a.add(b);
+        assertThat(a.getTotalCount()).isEqualTo(3);
+        assertThat(a.getMax()).isEqualTo(5_000);
+        assertThat(a.valueAtPercentile(50)).isEqualTo(20);
+
+        a.reset();
+        assertThat(a.getTotalCount()).isZero();
+        assertThat(a.valueAtPercentile(99)).isZero();
+    }
+}
@@ -0,0 +1,104 @@
+package com.xioshe.only.java.base.metrics;
+
+import com.xioshe.only.java.base.nio.reactor.EventLoop;
+import com.xioshe.only.java.base.nio.reactor.Reactor;
+import com.xioshe.only.java.base.nio.reactor.ReactorOptions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link LoopMetrics} 的记录与事件循环中的读数
+ *
+ * @author xioshe 2026-10-18
+ */
+class LoopMetricsTest {
+
+    @Test
+    void keep_slowest_handler_and_busy_ratio() {
+        var metrics = new LoopMetrics();
+        metrics.selected(3_000, 2);
+        metrics.dispatched("fast", 100);
+        metrics.dispatched("slow", 900);
+        metrics.dispatched("fast", 10);
+        metrics.loopCompleted(1_000, 5, false);
+        metrics.loopCompleted(0, 1024, true);
+
+        var snapshot = metrics.snapshot();
+        assertThat(snapshot.loops()).isEqualTo(2);
+        assertThat(snapshot.busyRatio()).isEqualTo(0.25);
+        assertThat(snapshot.slowestHandler()).isEqualTo("slow");
+        assertThat(snapshot.handlerMax()).isEqualTo(900);
+        assertThat(snapshot.backlogLoops()).isEqualTo(1);
+        assertThat(snapshot.taskQueueMax()).isEqualTo(1024);
+
+        metrics.reset();
+        assertThat(metrics.getLoops()).isZero();
+        assertThat(metrics.getSlowestHandler()).isEmpty();
+    }
+
+    @Test
+    void record_reactor_loop_and_read_through_jmx() throws Exception {
+        try (var reactor = new Reactor(0, new ReactorOptions())) {
+            int port = reactor.start();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(3000);
+                socket.getOutputStream().write("ping".getBytes());
+                assertThat(socket.getInputStream().readNBytes(4)).hasSize(4);
+            }
+            var metrics = reactor.getLoopMetrics().register("test");
+            try {
+                assertThat(metrics.getLoops()).isPositive();
+                assertThat(metrics.getReadyKeysMax()).isPositive();
+                var name = new ObjectName("com.xioshe.only.java:type=LoopMetrics,name=\"test\"");
+                assertThat((String) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "SlowestHandler"))
+                        .isNotEmpty();
+            } finally {
+                metrics.unregister();
+            }
+        }
+    }
+
+    @Test
+    void record_task_queue_depth_before_running_tasks() throws Exception {
+        var loop = new EventLoop();
+        var thread = new Thread(loop, "loop-queue");
+        thread.start();
+        try {
+            // 定时任务在执行任务队列之前运行，占住循环期间提交的任务在队列中堆积
+            var blocked = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            loop.schedule(() -> {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 0, TimeUnit.MILLISECONDS);
+            assertThat(blocked.await(2, TimeUnit.SECONDS)).isTrue();
+            var done = new CountDownLatch(100);
+            for (int i = 0; i < 100; i++) {
+                loop.execute(done::countDown);
+            }
+            release.countDown();
+            assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+
+            // 这一轮的统计在任务执行完之后才记录
+            long deadline = System.currentTimeMillis() + 2000;
+            while (loop.getMetrics().getTaskQueueMax() < 100 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(loop.getMetrics().getTaskQueueMax()).isGreaterThanOrEqualTo(100);
+        } finally {
+            loop.close();
+            thread.join(2000);
+        }
+    }
+}
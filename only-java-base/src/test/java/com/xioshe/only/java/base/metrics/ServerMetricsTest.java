@@ -0,0 +1,88 @@
+package com.xioshe.only.java.base.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link ServerMetrics} 的快照与 JMX 读数
+ *
+ * @author xioshe 2026-10-18
+ */
+class ServerMetricsTest {
+
+    @Test
+    void snapshot_sums_records_from_all_threads() throws InterruptedException {
+        var metrics = new ServerMetrics();
+        int threads = 4;
+        var done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                metrics.connectionAccepted();
+                for (int i = 1; i <= 1000; i++) {
+                    metrics.bytesIn(10);
+                    metrics.bytesOut(10);
+                    metrics.message(i * 1_000L);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        metrics.connectionClosed();
+
+        var snapshot = metrics.snapshot();
+        assertThat(snapshot.accepted()).isEqualTo(threads);
+        assertThat(snapshot.active()).isEqualTo(threads - 1);
+        assertThat(snapshot.bytesIn()).isEqualTo(threads * 10_000L);
+        assertThat(snapshot.messages()).isEqualTo(threads * 1000L);
+        assertThat(snapshot.max()).isEqualTo(1_000_000L);
+        assertThat(snapshot.p50()).isBetween(490_000L, 510_000L);
+    }
+
+    @Test
+    void merge_loop_recorders_with_stripes() throws InterruptedException {
+        var metrics = new ServerMetrics();
+        // 每个线程一个记录器，模拟多个事件循环
+        var threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            var recorder = metrics.newRecorder();
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 1000; i++) {
+                    recorder.message(i * 1_000L);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        metrics.message(2_000_000L);
+
+        var snapshot = metrics.snapshot();
+        assertThat(snapshot.messages()).isEqualTo(2001);
+        assertThat(snapshot.max()).isEqualTo(2_000_000L);
+        assertThat(snapshot.p50()).isBetween(490_000L, 510_000L);
+
+        metrics.reset();
+        assertThat(metrics.snapshot().max()).isZero();
+    }
+
+    @Test
+    void readable_through_jmx() throws Exception {
+        var metrics = new ServerMetrics().register("test");
+        try {
+            metrics.connectionAccepted();
+            metrics.error();
+            var name = new ObjectName("com.xioshe.only.java:type=ServerMetrics,name=\"test\"");
+            var server = ManagementFactory.getPlatformMBeanServer();
+            assertThat(server.getAttribute(name, "Active")).isEqualTo(1L);
+            assertThat(server.getAttribute(name, "Errors")).isEqualTo(1L);
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
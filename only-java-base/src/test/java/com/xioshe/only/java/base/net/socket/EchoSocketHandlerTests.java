@@ -16,7 +16,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
 
 /**
- * 对 {@link EchoSocketHandler#echoThroughSocket()} 方法的测试
+ * 对 {@link EchoSocketHandler#echoThroughSocket()} 与 {@link EchoSocketHandler#echoBytesThroughSocket()} 方法的测试
  *
  * @author xioshe 2022-03-27
  */
@@ -66,4 +66,19 @@ class EchoSocketHandlerTests {
                 .doesNotContain("last line")
                 .endsWith("BYE\n");
     }
-}
\ No newline at end of file
+
+    @Test
+    void echo_raw_bytes_in_binary_mode() throws IOException {
+        // 跨越多个缓冲区大小，且包含非法 UTF-8 序列
+        var bytes = new byte[EchoSocketHandler.BUFFER_SIZE * 3 + 7];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        inputStream = new ByteArrayInputStream(bytes);
+        when(mockSocket.getInputStream()).thenReturn(inputStream);
+
+        new EchoSocketHandler(mockSocket, 0, true).echoBytesThroughSocket();
+        assertThat(outputStream.toByteArray()).as("原样回写，没有欢迎语")
+                .isEqualTo(bytes);
+    }
+}
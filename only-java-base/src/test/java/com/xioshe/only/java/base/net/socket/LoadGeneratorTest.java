@@ -0,0 +1,106 @@
+package com.xioshe.only.java.base.net.socket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link LoadGenerator} 的闭环、开环两种模式，对端是进程内的 Echo 服务
+ *
+ * @author xioshe 2026-10-18
+ */
+class LoadGeneratorTest {
+
+    static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    ServerSocket slowServer;
+    VirtualThreadTcpEchoServer echoServer;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (slowServer != null) {
+            slowServer.close();
+        }
+        if (echoServer != null) {
+            echoServer.stop();
+        }
+    }
+
+    /**
+     * 每个连接按顺序回显，每行回复前停顿 delayMillis，单个连接每秒最多回复 1000 / delayMillis 条
+     *
+     * @return 监听端口
+     */
+    private int startSlowServer(long delayMillis) throws IOException {
+        slowServer = new ServerSocket(0);
+        Thread.ofVirtual().start(() -> {
+            while (!slowServer.isClosed()) {
+                try {
+                    Socket socket = slowServer.accept();
+                    Thread.ofVirtual().start(() -> {
+                        try (socket) {
+                            var in = new BufferedReader(
+                                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                            OutputStream out = socket.getOutputStream();
+                            for (String line; (line = in.readLine()) != null; ) {
+                                Thread.sleep(delayMillis);
+                                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                            }
+                        } catch (IOException | InterruptedException ignored) {
+                            // 客户端断开
+                        }
+                    });
+                } catch (IOException ignored) {
+                    // 服务端关闭
+                }
+            }
+        });
+        return slowServer.getLocalPort();
+    }
+
+    @Test
+    void closed_loop_sends_next_message_after_reply() throws Exception {
+        int port = startSlowServer(50);
+        var report = new LoadGenerator("localhost", port, 2, 16, 1, 0,
+                Duration.ZERO, Duration.ofSeconds(1), false).run();
+
+        // 每个连接每 50ms 一来一回，1 秒内约 20 条
+        assertThat(report.messages()).isBetween(30L, 42L);
+        assertThat(report.p50()).isBetween(50 * MILLIS, 100 * MILLIS);
+    }
+
+    @Test
+    void open_loop_sends_at_fixed_rate() throws Exception {
+        echoServer = new VirtualThreadTcpEchoServer();
+        int port = echoServer.start(0);
+        var report = new LoadGenerator("localhost", port, 2, 16, 1, 200,
+                Duration.ofMillis(200), Duration.ofSeconds(1), true).run();
+
+        // 服务端跟得上，收到的回复数由发送速率决定，与回复快慢无关
+        assertThat(report.messages()).isBetween(170L, 215L);
+    }
+
+    @Test
+    void open_loop_latency_counts_from_intended_send_time() throws Exception {
+        int port = startSlowServer(50);
+        // 计划每 25ms 发一条，服务端每 50ms 才回一条，后面的消息越排越久
+        var report = new LoadGenerator("localhost", port, 1, 16, 1, 40,
+                Duration.ZERO, Duration.ofSeconds(1), false).run();
+
+        assertThat(report.messages()).isBetween(15L, 22L);
+        // 从实际发送时刻算每条都只有 50ms，从计划时刻算会把排队等待的时间算进去
+        assertThat(report.p50()).isGreaterThan(150 * MILLIS);
+        assertThat(report.max()).isGreaterThan(400 * MILLIS);
+    }
+}
@@ -0,0 +1,143 @@
+package com.xioshe.only.java.base.net.socket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link PooledTcpEchoServer} 在 1 个线程、1 个排队位置下的各个拒绝策略与计数
+ *
+ * @author xioshe 2026-10-18
+ */
+class PooledTcpEchoServerTest {
+
+    static final String WELCOME = "Hello! Enter BYE to exit.";
+
+    PooledTcpEchoServer server;
+    final List<Socket> clients = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Socket client : clients) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private Socket connect(int port) throws IOException {
+        var socket = new Socket("localhost", port);
+        socket.setSoTimeout(3000);
+        clients.add(socket);
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    /**
+     * 第一个连接占住唯一的线程，第二个连接占住唯一的排队位置
+     *
+     * @return 占住线程的连接
+     */
+    private Socket saturate(int port) throws Exception {
+        Socket active = connect(port);
+        assertThat(reader(active).readLine()).isEqualTo(WELCOME);
+        connect(port);
+        await(() -> server.getQueued() == 1);
+        assertThat(server.getActive()).isEqualTo(1);
+        return active;
+    }
+
+    @Test
+    void refuse_with_reset() throws Exception {
+        server = new PooledTcpEchoServer(1, 1, 1, PooledTcpEchoServer.RejectPolicy.REFUSE, 0);
+        int port = server.start(0);
+        saturate(port);
+
+        Socket refused = connect(port);
+        assertThatThrownBy(() -> refused.getInputStream().read()).isInstanceOf(SocketException.class);
+        assertThat(server.getRejected()).isEqualTo(1);
+        assertThat(server.getActive()).isEqualTo(1);
+        assertThat(server.getQueued()).isEqualTo(1);
+    }
+
+    @Test
+    void reply_busy_then_close() throws Exception {
+        server = new PooledTcpEchoServer(1, 1, 1, PooledTcpEchoServer.RejectPolicy.BUSY, 0);
+        int port = server.start(0);
+        saturate(port);
+
+        BufferedReader busy = reader(connect(port));
+        assertThat(busy.readLine()).isEqualTo(PooledTcpEchoServer.BUSY_MESSAGE);
+        assertThat(busy.readLine()).isNull();
+        assertThat(server.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void wait_for_free_slot_before_rejecting() throws Exception {
+        server = new PooledTcpEchoServer(1, 1, 1, PooledTcpEchoServer.RejectPolicy.WAIT, 2000);
+        int port = server.start(0);
+        Socket active = saturate(port);
+
+        // accept 线程在等排队位置，第一个连接断开后第三个连接进入队列，不被拒绝
+        Socket waiting = connect(port);
+        active.close();
+        await(() -> server.getActive() == 1 && server.getQueued() == 1);
+        assertThat(server.getRejected()).isZero();
+
+        clients.get(1).close();
+        assertThat(reader(waiting).readLine()).isEqualTo(WELCOME);
+        assertThat(server.getRejected()).isZero();
+    }
+
+    @Test
+    void reply_busy_when_wait_times_out() throws Exception {
+        server = new PooledTcpEchoServer(1, 1, 1, PooledTcpEchoServer.RejectPolicy.WAIT, 100);
+        int port = server.start(0);
+        saturate(port);
+
+        long start = System.nanoTime();
+        assertThat(reader(connect(port)).readLine()).isEqualTo(PooledTcpEchoServer.BUSY_MESSAGE);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(100_000_000L);
+        assertThat(server.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void restart_after_stop() throws Exception {
+        server = new PooledTcpEchoServer(1, 1, 1, PooledTcpEchoServer.RejectPolicy.BUSY, 0);
+        // 每次启动都创建新的线程池，上次 stop() 关闭的不影响这次
+        for (int i = 0; i < 2; i++) {
+            int port = server.start(0);
+            Socket socket = connect(port);
+            BufferedReader in = reader(socket);
+            assertThat(in.readLine()).isEqualTo(WELCOME);
+            new PrintWriter(socket.getOutputStream(), true).println("ping");
+            assertThat(in.readLine()).isEqualTo("ping");
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.xioshe.only.java.base.net.socket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link VirtualThreadTcpEchoServer} 的回显与大量并发连接
+ *
+ * @author xioshe 2026-10-18
+ */
+class VirtualThreadTcpEchoServerTest {
+
+    static final String WELCOME = "Hello! Enter BYE to exit.";
+
+    final VirtualThreadTcpEchoServer server = new VirtualThreadTcpEchoServer(512);
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private static String echo(int port, String message) throws Exception {
+        try (var socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            var out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            assertThat(in.readLine()).isEqualTo(WELCOME);
+            out.println(message);
+            return in.readLine();
+        }
+    }
+
+    @Test
+    void echo_round_trip() throws Exception {
+        int port = server.start(0);
+        assertThat(echo(port, "hello virtual thread")).isEqualTo("hello virtual thread");
+        assertThat(server.getMetrics().getAccepted()).isEqualTo(1);
+    }
+
+    @Test
+    void serve_many_concurrent_clients() throws Exception {
+        int port = server.start(0);
+        int clients = 200;
+        // 所有连接都建立并收到欢迎语后才开始发送，服务端同时挂着全部连接
+        var connected = new CountDownLatch(clients);
+        List<CompletableFuture<String>> replies = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                String message = "client-" + i;
+                replies.add(CompletableFuture.supplyAsync(() -> {
+                    try (var socket = new Socket("localhost", port)) {
+                        socket.setSoTimeout(10_000);
+                        var in = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        var out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                        in.readLine();
+                        connected.countDown();
+                        connected.await();
+                        out.println(message);
+                        return in.readLine();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }, executor));
+            }
+            assertThat(connected.await(10, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < clients; i++) {
+                assertThat(replies.get(i).get(10, TimeUnit.SECONDS)).isEqualTo("client-" + i);
+            }
+        }
+        assertThat(server.getMetrics().getAccepted()).isEqualTo(clients);
+    }
+}
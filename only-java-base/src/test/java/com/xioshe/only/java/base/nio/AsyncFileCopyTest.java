@@ -0,0 +1,47 @@
+package com.xioshe.only.java.base.nio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link AsyncFileCopy} 的流水线复制与失败结束
+ *
+ * @author xioshe 2026-10-18
+ */
+class AsyncFileCopyTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void copy_with_reads_ahead_of_writes() throws Exception {
+        byte[] data = new byte[5 * 64 * 1024 + 999];
+        new Random(3).nextBytes(data);
+        Path src = Files.write(dir.resolve("src"), data);
+        Path dst = Files.write(dir.resolve("dst"), new byte[data.length + 10]);
+
+        var stats = new AsyncFileCopy(3, 64 * 1024).copy(src, dst).get(5, TimeUnit.SECONDS);
+
+        assertThat(Files.readAllBytes(dst)).isEqualTo(data);
+        assertThat(stats.bytes()).isEqualTo(data.length);
+        assertThat(stats.writes()).isGreaterThanOrEqualTo(6);
+    }
+
+    @Test
+    void complete_exceptionally_when_source_is_missing() {
+        var future = new AsyncFileCopy().copy(dir.resolve("missing"), dir.resolve("dst"));
+
+        assertThatThrownBy(future::get).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(NoSuchFileException.class);
+    }
+}
@@ -0,0 +1,167 @@
+package com.xioshe.only.java.base.nio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link ChannelCopy} 按两端类型选择复制方式
+ *
+ * @author xioshe 2026-10-18
+ */
+class ChannelCopyTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    void transfer_file_to_file_from_current_position() throws Exception {
+        byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+        Path src = Files.write(dir.resolve("src"), data);
+        Path dst = dir.resolve("dst");
+        try (var source = FileChannel.open(src, READ); var dest = FileChannel.open(dst, CREATE, WRITE)) {
+            source.position(100);
+            dest.position(5);
+            long copied = ChannelCopy.copy(source, dest);
+
+            assertThat(copied).isEqualTo(data.length - 100);
+            assertThat(source.position()).isEqualTo(data.length);
+            assertThat(dest.position()).isEqualTo(5 + copied);
+        }
+        byte[] result = Files.readAllBytes(dst);
+        assertThat(Arrays.copyOfRange(result, 5, result.length)).isEqualTo(Arrays.copyOfRange(data, 100, data.length));
+    }
+
+    @Test
+    void transfer_between_file_and_stream_channels() throws Exception {
+        byte[] data = randomBytes(1024 * 1024 + 3);
+        Path file = dir.resolve("file");
+
+        // 目标是文件
+        try (var source = Channels.newChannel(new ByteArrayInputStream(data)); var dest = FileChannel.open(file, CREATE, WRITE)) {
+            assertThat(ChannelCopy.copy(source, dest)).isEqualTo(data.length);
+        }
+        assertThat(Files.readAllBytes(file)).isEqualTo(data);
+
+        // 源是文件
+        var out = new ByteArrayOutputStream();
+        try (var source = FileChannel.open(file, READ); var dest = Channels.newChannel(out)) {
+            assertThat(ChannelCopy.copy(source, dest)).isEqualTo(data.length);
+        }
+        assertThat(out.toByteArray()).isEqualTo(data);
+
+        // 两端都不是文件，退回读写循环
+        var copy = new ByteArrayOutputStream();
+        assertThat(ChannelCopy.copy(Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(copy)))
+                .isEqualTo(data.length);
+        assertThat(copy.toByteArray()).isEqualTo(data);
+    }
+
+    @Test
+    void checksum_count_and_compress_in_one_pass() throws Exception {
+        // 重复的内容才压得动
+        byte[] data = new byte[512 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 7);
+        }
+        Path file = Files.write(dir.resolve("plain"), data);
+        var crc = CopyStage.crc32c();
+        var count = CopyStage.byteCount();
+        var compressed = new ByteArrayOutputStream();
+        try (var source = FileChannel.open(file, READ)) {
+            long written = ChannelCopy.copy(source, Channels.newChannel(compressed), crc, count, CopyStage.deflate(Deflater.BEST_SPEED));
+            assertThat(written).isEqualTo(compressed.size()).isLessThan(data.length / 10);
+        }
+        var expected = new CRC32C();
+        expected.update(data);
+        assertThat(crc.value()).isEqualTo(expected.getValue());
+        assertThat(count.count()).isEqualTo(data.length);
+
+        // 解压后再算一遍校验和
+        var restoredCrc = CopyStage.crc32c();
+        var restored = new ByteArrayOutputStream();
+        ChannelCopy.copy(Channels.newChannel(new ByteArrayInputStream(compressed.toByteArray())),
+                Channels.newChannel(restored), CopyStage.inflate(), restoredCrc);
+        assertThat(restored.toByteArray()).isEqualTo(data);
+        assertThat(restoredCrc.value()).isEqualTo(crc.value());
+    }
+
+    @Test
+    void deflate_finish_ignores_reused_input_buffer() throws Exception {
+        var deflate = CopyStage.deflate(Deflater.BEST_SPEED);
+        var compressed = new ByteArrayOutputStream();
+        CopyStage.Sink sink = buffer -> {
+            while (buffer.hasRemaining()) {
+                compressed.write(buffer.get());
+            }
+        };
+        var buffer = ByteBuffer.allocate(1024);
+        buffer.put("hello".getBytes()).flip();
+        deflate.process(buffer, sink);
+        // 调用方清空并复用 buffer 后才结束
+        buffer.clear().put(new byte[]{'x', 'y', 'z'}).clear();
+        deflate.finish(sink);
+        deflate.release();
+
+        try (var in = new InflaterInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertThat(new String(in.readAllBytes())).isEqualTo("hello");
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void report_error_from_pipeline_and_use_given_executor() throws Exception {
+        var started = new AtomicInteger();
+        var executor = Executors.newSingleThreadExecutor(r -> {
+            started.incrementAndGet();
+            return new Thread(r, "test-pipeline");
+        });
+        // 源远大于流水线中的几块 buffer，流水线任务退出后读取必须被唤醒
+        byte[] data = new byte[ChannelCopy.STAGE_BUFFER_SIZE * ChannelCopy.PIPELINE_BUFFERS * 4];
+        CopyStage failing = new CopyStage() {
+            @Override
+            public void process(ByteBuffer in, Sink out) {
+                throw new OutOfMemoryError("simulated");
+            }
+
+            @Override
+            public boolean cpuHeavy() {
+                return true;
+            }
+        };
+        try {
+            assertThatThrownBy(() -> ChannelCopy.copy(Channels.newChannel(new ByteArrayInputStream(data)),
+                    Channels.newChannel(new ByteArrayOutputStream()), executor, failing))
+                    .isInstanceOf(OutOfMemoryError.class)
+                    .hasMessage("simulated");
+            assertThat(started.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
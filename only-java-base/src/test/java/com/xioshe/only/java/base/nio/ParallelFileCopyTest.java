@@ -0,0 +1,45 @@
+package com.xioshe.only.java.base.nio;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link ParallelFileCopy} 分段复制的正确性
+ *
+ * @author xioshe 2026-10-18
+ */
+class ParallelFileCopyTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(ParallelFileCopy.Mode.class)
+    void copy_file_in_uneven_chunks(ParallelFileCopy.Mode mode) throws Exception {
+        // 最后一段不满，目标文件原来更长，会被截断
+        byte[] data = new byte[10 * 64 * 1024 + 123];
+        new Random(7).nextBytes(data);
+        Path src = Files.write(dir.resolve("src"), data);
+        Path dst = Files.write(dir.resolve("dst"), new byte[data.length * 2]);
+
+        try (var copier = new ParallelFileCopy(mode, 64 * 1024, 4)) {
+            assertThat(copier.copy(src, dst)).isEqualTo(data.length);
+        }
+        assertThat(Files.readAllBytes(dst)).isEqualTo(data);
+    }
+
+    @Test
+    void reject_mapped_window_over_2g() {
+        assertThatThrownBy(() -> new ParallelFileCopy(ParallelFileCopy.Mode.MAPPED, Integer.MAX_VALUE + 1L, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
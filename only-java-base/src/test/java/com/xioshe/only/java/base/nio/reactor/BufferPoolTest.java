@@ -0,0 +1,54 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link BufferPool} 的规格选择与复用
+ *
+ * @author xioshe 2026-10-18
+ */
+class BufferPoolTest {
+
+    @Test
+    void reuse_released_buffer_of_same_class() {
+        var pool = new BufferPool();
+        ByteBuffer first = pool.acquire(3000);
+        assertThat(first.isDirect()).isTrue();
+        assertThat(first.capacity()).isEqualTo(4 * 1024);
+        first.put((byte) 1);
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(4096);
+        assertThat(second).isSameAs(first);
+        assertThat(second.position()).isZero();
+
+        var stats = pool.stats();
+        assertThat(stats.acquired()).isEqualTo(2);
+        assertThat(stats.allocated()).isEqualTo(1);
+        assertThat(stats.inUseBytes()).isEqualTo(4 * 1024);
+        assertThat(stats.pooledBytes()).isZero();
+    }
+
+    @Test
+    void do_not_pool_oversize_or_foreign_buffers() {
+        var pool = new BufferPool();
+        ByteBuffer large = pool.acquire(1024 * 1024);
+        assertThat(large.capacity()).isEqualTo(1024 * 1024);
+        pool.release(large);
+        ByteBuffer small = pool.acquire(1024);
+        // 堆内、容量不是规格的 buffer 归还时被忽略，不影响统计
+        pool.release(ByteBuffer.allocate(1024));
+        pool.release(ByteBuffer.allocateDirect(3000));
+
+        assertThat(pool.acquire(1024 * 1024)).isNotSameAs(large);
+        var stats = pool.stats();
+        assertThat(stats.pooledBytes()).isZero();
+        assertThat(stats.inUseBytes()).isEqualTo(small.capacity());
+        assertThat(stats.released()).isZero();
+        assertThat(stats.allocated()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,61 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import com.xioshe.only.java.base.metrics.ServerMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link DatagramHandler} 的回显与丢弃计数
+ *
+ * @author xioshe 2026-10-18
+ */
+class DatagramHandlerTest {
+
+    @Test
+    void echo_datagrams_on_reactor_loop() throws Exception {
+        try (var reactor = new Reactor(0, new ReactorOptions())) {
+            reactor.start();
+            int port = reactor.bindDatagram(0);
+            try (var socket = new DatagramSocket()) {
+                socket.setSoTimeout(3000);
+                var server = new InetSocketAddress("localhost", port);
+                int count = 20;
+                for (int i = 0; i < count; i++) {
+                    byte[] data = ("ping-" + i).getBytes();
+                    socket.send(new DatagramPacket(data, data.length, server));
+                }
+                var received = new DatagramPacket(new byte[64], 64);
+                for (int i = 0; i < count; i++) {
+                    socket.receive(received);
+                    assertThat(new String(received.getData(), 0, received.getLength())).startsWith("ping-");
+                }
+                assertThat(reactor.getMetrics().getDatagramsIn()).isEqualTo(count);
+            }
+        }
+    }
+
+    @Test
+    void drop_replies_when_queue_is_full() throws Exception {
+        var metrics = new ServerMetrics();
+        var pool = new BufferPool();
+        var handler = new DatagramHandler(DatagramChannel.open(), metrics, 1024, 1);
+        handler.pool = pool;
+        var to = new InetSocketAddress("localhost", 9);
+
+        handler.reply(ByteBuffer.wrap(new byte[8]), to);
+        handler.reply(ByteBuffer.wrap(new byte[8]), to);
+        assertThat(metrics.getDatagramDrops()).isEqualTo(1);
+
+        // 关闭时还没发出的回复也算丢弃
+        handler.close();
+        assertThat(metrics.getDatagramDrops()).isEqualTo(2);
+        assertThat(pool.stats().acquired()).isEqualTo(pool.stats().released());
+    }
+}
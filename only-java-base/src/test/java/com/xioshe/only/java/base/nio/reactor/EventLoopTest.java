@@ -0,0 +1,112 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link EventLoop} 在各种 {@link WaitStrategy} 下的任务提交与定时任务
+ *
+ * @author xioshe 2026-10-18
+ */
+class EventLoopTest {
+
+    static Stream<Arguments> strategies() {
+        return Stream.of(
+                Arguments.of("blocking", WaitStrategy.blocking()),
+                Arguments.of("timed", WaitStrategy.timed(50)),
+                Arguments.of("busySpin", WaitStrategy.busySpin()),
+                Arguments.of("spinYieldPark", WaitStrategy.spinYieldPark(100, 10, TimeUnit.SECONDS.toNanos(10))));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("strategies")
+    void wake_up_for_submitted_and_scheduled_tasks(String name, WaitStrategy strategy) throws Exception {
+        var loop = new EventLoop(strategy);
+        var thread = new Thread(loop, "loop-" + name);
+        thread.start();
+        try {
+            // 等循环进入空闲等待
+            Thread.sleep(50);
+            var executed = new CompletableFuture<Boolean>();
+            loop.execute(() -> executed.complete(loop.inEventLoop()));
+            assertThat(executed.get(2, TimeUnit.SECONDS)).isTrue();
+
+            List<String> order = new CopyOnWriteArrayList<>();
+            var done = new CompletableFuture<Void>();
+            loop.schedule(() -> {
+                order.add("late");
+                done.complete(null);
+            }, 60, TimeUnit.MILLISECONDS);
+            loop.schedule(() -> order.add("early"), 20, TimeUnit.MILLISECONDS);
+            loop.schedule(() -> order.add("cancelled"), 10, TimeUnit.MILLISECONDS).cancel();
+
+            done.get(2, TimeUnit.SECONDS);
+            assertThat(order).containsExactly("early", "late");
+        } finally {
+            loop.close();
+            thread.join(2000);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("strategies")
+    void keep_running_after_handler_failure_and_close_on_loop_thread(String name, WaitStrategy strategy)
+            throws Exception {
+        var loop = new EventLoop(strategy);
+        var thread = new Thread(loop, "loop-" + name);
+        thread.start();
+        var pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            var registered = new CompletableFuture<SelectionKey>();
+            var failed = new CompletableFuture<Boolean>();
+            loop.execute(() -> {
+                try {
+                    registered.complete(pipe.source().register(loop.getSelector(), SelectionKey.OP_READ,
+                            new SelectionHandler() {
+                                @Override
+                                public void run() {
+                                    throw new IllegalStateException("handler failure");
+                                }
+
+                                @Override
+                                public void onDispatchFailure() {
+                                    registered.join().cancel();
+                                    failed.complete(loop.inEventLoop());
+                                }
+                            }));
+                } catch (Exception e) {
+                    registered.completeExceptionally(e);
+                }
+            });
+            registered.get(2, TimeUnit.SECONDS);
+            pipe.sink().write(ByteBuffer.wrap(new byte[]{1}));
+            // 异常交给 handler 自己收尾
+            assertThat(failed.get(2, TimeUnit.SECONDS)).isTrue();
+            // 分发抛异常后循环仍然在执行任务
+            Thread.sleep(50);
+            var executed = new CompletableFuture<Boolean>();
+            loop.execute(() -> executed.complete(true));
+            assertThat(executed.get(2, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            loop.close();
+            thread.join(2000);
+            pipe.source().close();
+            pipe.sink().close();
+        }
+        assertThat(thread.isAlive()).isFalse();
+        assertThat(loop.getSelector().isOpen()).isFalse();
+    }
+}
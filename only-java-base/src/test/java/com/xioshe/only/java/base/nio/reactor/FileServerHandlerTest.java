@@ -0,0 +1,125 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link FileServerHandler} 的流水线请求、并发下载与目录限制
+ *
+ * @author xioshe 2026-10-18
+ */
+class FileServerHandlerTest {
+
+    @TempDir
+    Path dir;
+
+    private static String readLine(DataInputStream in) throws IOException {
+        var line = new StringBuilder();
+        for (int c; (c = in.read()) != '\n'; ) {
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    private static byte[] download(Socket socket, String name) throws IOException {
+        socket.getOutputStream().write(("GET " + name + "\n").getBytes(StandardCharsets.UTF_8));
+        var in = new DataInputStream(socket.getInputStream());
+        String header = readLine(in);
+        assertThat(header).startsWith("+");
+        return in.readNBytes(Integer.parseInt(header.substring(1)));
+    }
+
+    @Test
+    void serve_pipelined_and_concurrent_downloads() throws Exception {
+        byte[] big = new byte[3 * 1024 * 1024 + 5];
+        new Random(11).nextBytes(big);
+        // 根目录之外的文件不能下载
+        Files.write(dir.resolve("big"), big);
+        Path root = Files.createDirectory(dir.resolve("public"));
+        Files.write(root.resolve("big"), big);
+        Files.writeString(root.resolve("small.txt"), "hello");
+
+        var options = new ReactorOptions().sendBufferSize(64 * 1024).serveFiles(root);
+        try (var reactor = new Reactor(0, options)) {
+            int port = reactor.start();
+            try (var a = new Socket("localhost", port); var b = new Socket("localhost", port)) {
+                a.setSoTimeout(5000);
+                b.setSoTimeout(5000);
+                // 两个连接同时下载，由同一个循环轮流推进
+                var other = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return download(b, "/big");
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                a.getOutputStream().write("GET big\nGET ../big\nGET small.txt\nGET missing\n"
+                        .getBytes(StandardCharsets.UTF_8));
+                var in = new DataInputStream(a.getInputStream());
+                assertThat(readLine(in)).isEqualTo("+" + big.length);
+                assertThat(in.readNBytes(big.length)).isEqualTo(big);
+                assertThat(readLine(in)).isEqualTo("-ERR not found: ../big");
+                assertThat(readLine(in)).isEqualTo("+5");
+                assertThat(new String(in.readNBytes(5), StandardCharsets.UTF_8)).isEqualTo("hello");
+                assertThat(readLine(in)).isEqualTo("-ERR not found: missing");
+
+                assertThat(other.join()).isEqualTo(big);
+            }
+        }
+    }
+
+    @Test
+    void reject_invalid_name_without_breaking_the_loop() throws Exception {
+        Path root = Files.createDirectory(dir.resolve("public"));
+        Files.writeString(root.resolve("small.txt"), "hello");
+
+        try (var reactor = new Reactor(0, new ReactorOptions().serveFiles(root))) {
+            int port = reactor.start();
+            try (var a = new Socket("localhost", port); var b = new Socket("localhost", port)) {
+                a.setSoTimeout(3000);
+                b.setSoTimeout(3000);
+                a.getOutputStream().write("GET a\0b\n".getBytes(StandardCharsets.UTF_8));
+                assertThat(readLine(new DataInputStream(a.getInputStream()))).startsWith("-ERR not found: a");
+
+                // 循环仍在运行，其他连接照常下载
+                assertThat(new String(download(b, "small.txt"), StandardCharsets.UTF_8)).isEqualTo("hello");
+            }
+        }
+    }
+
+    @Test
+    void pause_reading_while_too_many_responses_are_queued() throws Exception {
+        Path root = Files.createDirectory(dir.resolve("public"));
+        byte[] file = new byte[64 * 1024];
+        new Random(7).nextBytes(file);
+        Files.write(root.resolve("file"), file);
+        int requests = FileServerHandler.MAX_PENDING_RESPONSES * 2;
+
+        var options = new ReactorOptions().sendBufferSize(64 * 1024).serveFiles(root);
+        try (var reactor = new Reactor(0, options)) {
+            int port = reactor.start();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(5000);
+                // 一次发出所有请求再开始读回复
+                socket.getOutputStream().write("GET file\n".repeat(requests).getBytes(StandardCharsets.UTF_8));
+                var in = new DataInputStream(socket.getInputStream());
+                for (int i = 0; i < requests; i++) {
+                    assertThat(readLine(in)).isEqualTo("+" + file.length);
+                    assertThat(in.readNBytes(file.length)).isEqualTo(file);
+                }
+            }
+            assertThat(reactor.getMetrics().getReadPauses()).isPositive();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link FrameDecoder} 的切分与跨读累积
+ *
+ * @author xioshe 2026-10-18
+ */
+class FrameDecoderTest {
+
+    private static ByteBuffer buffer(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static List<String> strings(List<ByteBuffer> frames) {
+        return frames.stream().map(f -> StandardCharsets.US_ASCII.decode(f.duplicate()).toString()).toList();
+    }
+
+    @Test
+    void split_pipelined_lines_and_keep_partial_one() throws IOException {
+        var decoder = FrameDecoder.lines(64);
+        var in = buffer("GET a\nGET b\nGET");
+        List<ByteBuffer> frames = new ArrayList<>();
+
+        decoder.decode(in, frames);
+
+        assertThat(strings(frames)).containsExactly("GET a\n", "GET b\n");
+        assertThat(in.position()).isEqualTo(12);
+        // slice 与接收 buffer 共享内存
+        assertThat(frames.get(0).hasArray() && frames.get(0).array() == in.array()).isTrue();
+
+        // 模拟 IoHandler 压缩后读入后续数据
+        var next = ByteBuffer.allocate(32).put(in).put(" c\n".getBytes(StandardCharsets.US_ASCII)).flip();
+        frames.clear();
+        decoder.decode(next, frames);
+        assertThat(strings(frames)).containsExactly("GET c\n");
+        assertThat(next.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void decode_length_prefixed_frames_and_reject_oversize() throws IOException {
+        var decoder = FrameDecoder.lengthPrefixed(16);
+        var in = ByteBuffer.allocate(32).putInt(2).put((byte) 'h').put((byte) 'i').putInt(3).put((byte) 'x').flip();
+        List<ByteBuffer> frames = new ArrayList<>();
+
+        decoder.decode(in, frames);
+
+        assertThat(frames).hasSize(1);
+        assertThat(frames.get(0).remaining()).isEqualTo(6);
+        assertThat(in.remaining()).isEqualTo(5);
+
+        var oversize = ByteBuffer.allocate(8).putInt(17).flip();
+        assertThatThrownBy(() -> decoder.decode(oversize, new ArrayList<>())).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void reactor_echoes_lines_split_across_writes() throws Exception {
+        var options = new ReactorOptions().tcpNoDelay(true).frameDecoder(() -> FrameDecoder.lines(64 * 1024));
+        try (var reactor = new Reactor(0, options)) {
+            int port = reactor.start();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(3000);
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream();
+                // 比接收 buffer 大的一行，会触发扩容
+                String longLine = "x".repeat(40 * 1024) + "\n";
+                out.write("hel".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                Thread.sleep(50);
+                out.write(("lo\nworld\n" + longLine).getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+
+                String expected = "hello\nworld\n" + longLine;
+                byte[] echoed = in.readNBytes(expected.length());
+                assertThat(new String(echoed, StandardCharsets.US_ASCII)).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void record_message_only_after_whole_frame() throws Exception {
+        var options = new ReactorOptions().tcpNoDelay(true).frameDecoder(() -> FrameDecoder.lines(64));
+        try (var reactor = new Reactor(0, options)) {
+            int port = reactor.start();
+            var metrics = reactor.getMetrics();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(3000);
+                OutputStream out = socket.getOutputStream();
+                out.write("hel".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                long deadline = System.currentTimeMillis() + 3000;
+                while (metrics.getBytesIn() < 3 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertThat(metrics.getBytesIn()).isEqualTo(3);
+                // 半帧只读进了接收 buffer，还没有消息
+                assertThat(metrics.getMessages()).isZero();
+
+                out.write("lo\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                assertThat(socket.getInputStream().readNBytes(6)).isEqualTo("hello\n".getBytes(StandardCharsets.US_ASCII));
+                while (metrics.getMessages() < 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertThat(metrics.getMessages()).isEqualTo(1);
+            }
+        }
+    }
+}
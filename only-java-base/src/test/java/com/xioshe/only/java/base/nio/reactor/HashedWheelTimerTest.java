@@ -0,0 +1,113 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link HashedWheelTimer} 的到期顺序，以及 Reactor 用它关闭空闲连接
+ *
+ * @author xioshe 2026-10-18
+ */
+class HashedWheelTimerTest {
+
+    static final long TICK = 10;
+
+    static class Recorder extends HashedWheelTimer.Timeout {
+        final String name;
+        final List<String> fired;
+
+        Recorder(String name, List<String> fired) {
+            this.name = name;
+            this.fired = fired;
+        }
+
+        @Override
+        void expire() {
+            fired.add(name);
+        }
+    }
+
+    @Test
+    void expire_after_deadline_including_later_rounds() {
+        var timer = new HashedWheelTimer(TICK, 8, 0);
+        List<String> fired = new ArrayList<>();
+        var soon = new Recorder("soon", fired);
+        var later = new Recorder("later", fired);
+        var cancelled = new Recorder("cancelled", fired);
+        timer.schedule(soon, 25, 0);
+        // 超过一圈，和 soon 落在同一个槽
+        timer.schedule(later, 25 + 8 * TICK, 0);
+        timer.schedule(cancelled, 15, 0);
+        timer.cancel(cancelled);
+
+        timer.advance(29);
+        assertThat(fired).isEmpty();
+        timer.advance(30);
+        assertThat(fired).containsExactly("soon");
+        timer.advance(109);
+        assertThat(fired).containsExactly("soon");
+        timer.advance(110);
+        assertThat(fired).containsExactly("soon", "later");
+        assertThat(timer.size()).isZero();
+        assertThat(timer.nextTickNanos()).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void reschedule_moves_node_instead_of_adding_another() {
+        var timer = new HashedWheelTimer(TICK, 8, 0);
+        List<String> fired = new ArrayList<>();
+        var node = new Recorder("node", fired);
+        timer.schedule(node, 20, 0);
+        timer.schedule(node, 50, 15);
+
+        timer.advance(60);
+        assertThat(fired).isEmpty();
+        timer.advance(70);
+        assertThat(fired).containsExactly("node");
+    }
+
+    @Test
+    void rearm_for_exactly_one_revolution_from_expire() {
+        var timer = new HashedWheelTimer(TICK, 8, 0);
+        List<Long> fired = new ArrayList<>();
+        long[] now = {0};
+        var node = new HashedWheelTimer.Timeout() {
+            @Override
+            void expire() {
+                fired.add(now[0]);
+                if (fired.size() < 3) {
+                    timer.schedule(this, 8 * TICK, now[0]);
+                }
+            }
+        };
+        timer.schedule(node, 8 * TICK, 0);
+        for (; now[0] <= 400; now[0] += TICK) {
+            timer.advance(now[0]);
+        }
+        assertThat(fired).containsExactly(80L, 160L, 240L);
+    }
+
+    @Test
+    void reactor_closes_idle_connection() throws Exception {
+        var options = new ReactorOptions().idleTimeouts(null, null, Duration.ofMillis(200));
+        try (var reactor = new Reactor(0, options)) {
+            int port = reactor.start();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(3000);
+                InputStream in = socket.getInputStream();
+                socket.getOutputStream().write(new byte[]{1, 2, 3});
+                assertThat(in.readNBytes(3)).containsExactly(1, 2, 3);
+                // 服务端关闭后读到 EOF
+                assertThat(in.read()).isEqualTo(-1);
+            }
+            assertThat(reactor.getMetrics().getIdleTimeouts()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link KvServer} 的命令、流水线回复顺序与积压时的读暂停
+ *
+ * @author xioshe 2026-10-18
+ */
+class KvServerTest {
+
+    private static List<String> roundTrip(Socket socket, String commands, int lines) throws Exception {
+        socket.getOutputStream().write(commands.getBytes(StandardCharsets.ISO_8859_1));
+        var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        List<String> replies = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            replies.add(in.readLine());
+        }
+        return replies;
+    }
+
+    @ParameterizedTest
+    @EnumSource(KvServer.Storage.class)
+    void keep_reply_order_across_shards(KvServer.Storage storage) throws Exception {
+        try (var server = new KvServer(0, new ReactorOptions().subReactors(2), storage)) {
+            int port = server.start();
+            try (var a = new Socket("localhost", port); var b = new Socket("localhost", port)) {
+                a.setSoTimeout(3000);
+                b.setSoTimeout(3000);
+                // 16 个 key 大概率分布在两个分片上，回复顺序仍与请求一致
+                var sets = new StringBuilder();
+                var mget = new StringBuilder("MGET");
+                for (int i = 0; i < 16; i++) {
+                    sets.append("SET k").append(i).append(" v").append(i).append('\n');
+                    mget.append(" k").append(i);
+                }
+                assertThat(roundTrip(a, sets.toString(), 16)).containsOnly("+OK");
+
+                List<String> replies = roundTrip(b, mget + " missing\nINCR n\nINCR n\nDEL k0\nGET k0\nINCR k1\nFOO\n", 40);
+                assertThat(replies.get(0)).isEqualTo("*17");
+                for (int i = 0; i < 16; i++) {
+                    assertThat(replies.subList(1 + 2 * i, 3 + 2 * i)).containsExactly("$" + ("v" + i).length(), "v" + i);
+                }
+                assertThat(replies.subList(33, 40)).containsExactly(
+                        "$-1", ":1", ":2", ":1", "$-1",
+                        "-ERR value is not an integer or out of range", "-ERR unknown command 'FOO'");
+            }
+        }
+    }
+
+    @Test
+    void pause_reading_when_too_many_replies_are_pending() throws Exception {
+        try (var server = new KvServer(0, new ReactorOptions().subReactors(2), KvServer.Storage.SHARDED)) {
+            int port = server.start();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(5000);
+                // 一次发出远超上限的命令，其他分片的结果要等这批命令处理完才能送回
+                int keys = 8;
+                int commands = KvHandler.MAX_PENDING_REPLIES * 8;
+                var batch = new StringBuilder();
+                for (int i = 0; i < commands; i++) {
+                    batch.append("INCR n").append(i % keys).append('\n');
+                }
+                List<String> replies = roundTrip(socket, batch.toString(), commands);
+                for (int i = 0; i < commands; i++) {
+                    assertThat(replies.get(i)).isEqualTo(":" + (i / keys + 1));
+                }
+            }
+            assertThat(server.getMetrics().getReadPauses()).isPositive();
+        }
+    }
+}
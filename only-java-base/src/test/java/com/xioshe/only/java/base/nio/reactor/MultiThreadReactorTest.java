@@ -0,0 +1,61 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link MultiThreadReactor} 的跨线程任务提交与业务线程回复
+ *
+ * @author xioshe 2026-10-18
+ */
+class MultiThreadReactorTest {
+
+    @Test
+    void run_submitted_tasks_in_reactor_thread_in_order() throws Exception {
+        try (var reactor = new MultiThreadReactor(0, new ReactorOptions().subReactors(2))) {
+            reactor.start();
+            var order = new StringBuilder();
+            var threads = new String[2];
+            var done = new CompletableFuture<Void>();
+            reactor.execute(1, () -> {
+                order.append('a');
+                threads[0] = Thread.currentThread().getName();
+            });
+            reactor.execute(1, () -> {
+                order.append('b');
+                threads[1] = Thread.currentThread().getName();
+                done.complete(null);
+            });
+
+            done.get(5, TimeUnit.SECONDS);
+            assertThat(order).hasToString("ab");
+            assertThat(threads[0]).isEqualTo(threads[1]).isNotEqualTo(Thread.currentThread().getName());
+        }
+    }
+
+    @Test
+    void worker_replies_wake_parked_loop() throws Exception {
+        // 循环停在 parkNanos 中，回复只有经过 EventLoop.execute 才能及时唤醒它
+        var options = new ReactorOptions().subReactors(1).workerThreads(2)
+                .waitStrategy(WaitStrategy.spinYieldPark(10, 10, TimeUnit.SECONDS.toNanos(30)));
+        try (var reactor = new MultiThreadReactor(0, options)) {
+            int port = reactor.start();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setSoTimeout(3000);
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream();
+                for (int i = 0; i < 20; i++) {
+                    out.write(new byte[]{(byte) i, 1, 2});
+                    assertThat(in.readNBytes(3)).containsExactly(i, 1, 2);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link OrderedWorkerPool} 的按 key 保序与饱和处理
+ *
+ * @author xioshe 2026-10-18
+ */
+class OrderedWorkerPoolTest {
+
+    @Test
+    void run_tasks_of_same_key_in_submit_order() throws InterruptedException {
+        int keys = 8;
+        int tasksPerKey = 1000;
+        try (var pool = new OrderedWorkerPool("test", 4, keys * tasksPerKey,
+                OrderedWorkerPool.SaturationPolicy.REJECT, 0)) {
+            List<List<Integer>> seen = new ArrayList<>();
+            for (int k = 0; k < keys; k++) {
+                seen.add(new ArrayList<>());
+            }
+            var done = new CountDownLatch(keys * tasksPerKey);
+            for (int i = 0; i < tasksPerKey; i++) {
+                for (int k = 0; k < keys; k++) {
+                    int key = k;
+                    int value = i;
+                    pool.execute(key, () -> {
+                        // 同一个 key 只在一个线程上执行，不需要同步
+                        seen.get(key).add(value);
+                        done.countDown();
+                    });
+                }
+            }
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            for (List<Integer> values : seen) {
+                assertThat(values).hasSize(tasksPerKey).isSorted();
+            }
+        }
+    }
+
+    @Test
+    void reject_when_queue_is_full() throws InterruptedException {
+        try (var pool = new OrderedWorkerPool("test", 1, 1,
+                OrderedWorkerPool.SaturationPolicy.WAIT, 10)) {
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            pool.execute(0, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            // 线程被占用，队列只能再放一个
+            pool.execute(0, () -> {});
+
+            assertThatThrownBy(() -> pool.execute(0, () -> {}))
+                    .isInstanceOf(RejectedExecutionException.class);
+            assertThat(pool.getRejected()).isEqualTo(1);
+            assertThat(pool.getQueued()).isEqualTo(1);
+            release.countDown();
+        }
+    }
+}
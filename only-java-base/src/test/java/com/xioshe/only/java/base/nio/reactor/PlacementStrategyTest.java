@@ -0,0 +1,111 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link PlacementStrategy} 内置策略的选择结果，以及空闲循环的耗时衰减
+ *
+ * @author xioshe 2026-10-18
+ */
+class PlacementStrategyTest {
+
+    record FixedLoad(int connections, long loopLatencyNanos) implements PlacementStrategy.Load {
+    }
+
+    @Test
+    void round_robin_ignores_load() {
+        var strategy = PlacementStrategy.roundRobin();
+        var reactors = new PlacementStrategy.Load[]{
+                new FixedLoad(100, 0), new FixedLoad(0, 0), new FixedLoad(0, 0)};
+
+        assertThat(new int[]{strategy.place(reactors), strategy.place(reactors),
+                strategy.place(reactors), strategy.place(reactors)}).containsExactly(0, 1, 2, 0);
+    }
+
+    @Test
+    void pick_least_loaded_and_rotate_on_ties() {
+        var reactors = new PlacementStrategy.Load[]{
+                new FixedLoad(3, 900), new FixedLoad(1, 500), new FixedLoad(1, 100), new FixedLoad(5, 100)};
+
+        var byConnections = PlacementStrategy.leastConnections();
+        assertThat(byConnections.place(reactors)).isEqualTo(1);
+        assertThat(byConnections.place(reactors)).isEqualTo(2);
+
+        // 平均每个连接 160ns：1380、660、260、900
+        var byLatency = PlacementStrategy.leastLoopLatency();
+        assertThat(byLatency.place(reactors)).isEqualTo(2);
+        assertThat(byLatency.place(reactors)).isEqualTo(2);
+    }
+
+    /**
+     * 分配后连接数立即增加，循环耗时不变
+     */
+    static final class MutableLoad implements PlacementStrategy.Load {
+        int connections;
+        final long loopLatencyNanos;
+
+        MutableLoad(int connections, long loopLatencyNanos) {
+            this.connections = connections;
+            this.loopLatencyNanos = loopLatencyNanos;
+        }
+
+        @Override
+        public int connections() {
+            return connections;
+        }
+
+        @Override
+        public long loopLatencyNanos() {
+            return loopLatencyNanos;
+        }
+    }
+
+    @Test
+    void spread_burst_of_accepts_before_latency_changes() {
+        var reactors = new MutableLoad[]{new MutableLoad(10, 1000), new MutableLoad(10, 1000), new MutableLoad(0, 0)};
+        var strategy = PlacementStrategy.leastLoopLatency();
+        int[] placed = new int[reactors.length];
+        for (int i = 0; i < 90; i++) {
+            int index = strategy.place(reactors);
+            placed[index]++;
+            reactors[index].connections++;
+        }
+        // 空闲的 Reactor 先分到约 40 个连接追平负载，之后三个轮流分配
+        assertThat(placed[2]).isGreaterThan(placed[0]).isLessThan(90);
+        assertThat(placed[0]).isPositive();
+        assertThat(placed[1]).isPositive();
+    }
+
+    @Test
+    void loop_latency_decays_while_idle() throws Exception {
+        var loop = new EventLoop();
+        var thread = new Thread(loop, "loop-decay");
+        thread.start();
+        try {
+            var busy = new CompletableFuture<Void>();
+            loop.execute(() -> {
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(40);
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                busy.complete(null);
+            });
+            busy.get(2, TimeUnit.SECONDS);
+            // 等循环算完这一轮并进入等待
+            Thread.sleep(5);
+            long loaded = loop.loopLatencyNanos();
+            assertThat(loaded).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(1));
+
+            Thread.sleep(15 * EventLoop.LATENCY_HALF_LIFE_NANOS / 1_000_000);
+            assertThat(loop.loopLatencyNanos()).isLessThan(loaded / 100);
+        } finally {
+            loop.close();
+            thread.join(2000);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link SelectedKeySet} 替换 JDK selector 内部集合后能收到就绪的 key
+ *
+ * @author xioshe 2026-10-18
+ */
+class SelectedKeySetTest {
+
+    @Test
+    void collect_ready_keys_into_array() throws Exception {
+        try (var selector = Selector.open()) {
+            var set = SelectedKeySet.install(selector);
+            assertThat(set).isNotNull();
+            assertThat(selector.selectedKeys()).isSameAs(set);
+
+            var pipe = Pipe.open();
+            try (var source = pipe.source(); var sink = pipe.sink()) {
+                source.configureBlocking(false);
+                var key = source.register(selector, SelectionKey.OP_READ);
+                sink.write(ByteBuffer.wrap(new byte[]{1}));
+
+                assertThat(selector.select(1000)).isEqualTo(1);
+                assertThat(set.size).isEqualTo(1);
+                assertThat(set.keys[0]).isSameAs(key);
+                assertThat(key.isReadable()).isTrue();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.xioshe.only.java.base.nio.reactor;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 发送队列超过高水位时暂停读取
+ *
+ * @author xioshe 2026-10-18
+ */
+class WriteWatermarkTest {
+
+    @Test
+    void pause_reading_while_client_does_not_receive() throws Exception {
+        var options = new ReactorOptions().sendBufferSize(8 * 1024).writeWatermarks(16 * 1024, 64 * 1024);
+        try (var reactor = new Reactor(0, options)) {
+            int port = reactor.start();
+            try (var socket = new Socket("localhost", port)) {
+                socket.setReceiveBufferSize(8 * 1024);
+                socket.setSoTimeout(3000);
+                int total = 256 * 1024;
+                // 客户端只发不收，服务端回复堆积，socket 写满后发送方也会阻塞
+                var sender = CompletableFuture.runAsync(() -> {
+                    try {
+                        byte[] chunk = new byte[16 * 1024];
+                        for (int sent = 0; sent < total; sent += chunk.length) {
+                            socket.getOutputStream().write(chunk);
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                long deadline = System.currentTimeMillis() + 3000;
+                while (reactor.getMetrics().getReadPausedConnections() == 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertThat(reactor.getMetrics().getReadPausedConnections()).isEqualTo(1);
+
+                InputStream in = socket.getInputStream();
+                assertThat(in.readNBytes(total)).hasSize(total);
+                sender.join();
+            }
+            assertThat(reactor.getMetrics().getReadPauses()).isPositive();
+        }
+    }
+
+    @Test
+    void reject_low_watermark_not_below_high() {
+        assertThatThrownBy(() -> new ReactorOptions().writeWatermarks(64, 64))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -28,31 +28,65 @@ public class EchoServer {
     }
 
     private final int port;
+    private final boolean keepAlive;
+
+    private EventLoopGroup elGroup;
+    private Channel serverChannel;
 
     public EchoServer(int port) {
+        this(port, false);
+    }
+
+    /**
+     * @param port      监听端口，0 表示随机端口
+     * @param keepAlive 为 true 时回复后保持连接，且不打印消息，用于压测
+     */
+    public EchoServer(int port, boolean keepAlive) {
         this.port = port;
+        this.keepAlive = keepAlive;
     }
 
     public void start() throws InterruptedException {
-        var echoHandler = new EchoServerHandler();
-        EventLoopGroup elGroup = new NioEventLoopGroup();
         try {
-            var serverBootstrap = new ServerBootstrap();
-            serverBootstrap.group(elGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .localAddress(new InetSocketAddress(port))
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            ch.pipeline().addLast(echoHandler);
-                        }
-                    });
-            // 阻塞绑定
-            var bindFuture = serverBootstrap.bind().sync();
+            bind();
             // 阻塞等待通道关闭时的通知，主线程一直阻塞
-            bindFuture.channel().closeFuture().sync();
+            serverChannel.closeFuture().sync();
         } finally {
-            // 阻塞停止事件循环
+            stop();
+        }
+    }
+
+    /**
+     * 绑定端口后立即返回，事件循环在后台运行
+     *
+     * @return 实际监听的端口
+     */
+    public int bind() throws InterruptedException {
+        ChannelHandler echoHandler = keepAlive ? new KeepAliveEchoHandler() : new EchoServerHandler();
+        elGroup = new NioEventLoopGroup();
+        var serverBootstrap = new ServerBootstrap();
+        serverBootstrap.group(elGroup)
+                .channel(NioServerSocketChannel.class)
+                .localAddress(new InetSocketAddress(port))
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(echoHandler);
+                    }
+                });
+        // 阻塞绑定
+        serverChannel = serverBootstrap.bind().sync().channel();
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    /**
+     * 关闭监听通道，并阻塞停止事件循环
+     */
+    public void stop() throws InterruptedException {
+        if (serverChannel != null) {
+            serverChannel.close().sync();
+        }
+        if (elGroup != null) {
             elGroup.shutdownGracefully().sync();
         }
     }
@@ -84,4 +118,27 @@ public class EchoServer {
         }
     }
 
+    /**
+     * 长连接版本，一批读完后 flush，但不关闭 Channel
+     */
+    @ChannelHandler.Sharable
+    private static class KeepAliveEchoHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.write(msg);
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            ctx.flush();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            cause.printStackTrace();
+            ctx.close();
+        }
+    }
+
 }